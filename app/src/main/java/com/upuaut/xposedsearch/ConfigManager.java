@@ -12,6 +12,7 @@ import org.json.JSONObject;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
@@ -20,6 +21,7 @@ public class ConfigManager {
     private static final String TAG = "XposedSearch";
     public static final String PREF_NAME = "xposed_search_engines";
     private static final String KEY_ENGINES = "engines";
+    private static final String KEY_GENERATION = "generation";
 
     // Provider authority
     public static final String AUTHORITY = "com.upuaut.xposedsearch.provider";
@@ -56,7 +58,13 @@ public class ConfigManager {
         Log.d(TAG, "[APP] saveEngines size=" + list.size());
 
         SharedPreferences sp = getPrefs(context);
-        sp.edit().putString(KEY_ENGINES, json).commit(); // 用 commit 确保立即写入
+        synchronized (ConfigManager.class) {
+            // 数据与代数在同一次 commit 中写入，Provider 侧据此判断是否需要重新拉取
+            sp.edit()
+                    .putString(KEY_ENGINES, json)
+                    .putLong(KEY_GENERATION, nextGeneration(sp))
+                    .commit(); // 用 commit 确保立即写入
+        }
 
         // 确保文件可读
         makePrefsWorldReadable(context);
@@ -65,6 +73,25 @@ public class ConfigManager {
         notifyChange(context);
     }
 
+    /**
+     * 当前配置代数，每次保存单调递增
+     */
+    public static long getGeneration(Context context) {
+        if (context == null) return 0L;
+        return getPrefs(context).getLong(KEY_GENERATION, 0L);
+    }
+
+    /**
+     * 计算下一个代数
+     * 首次写入时以当前时间为起点，避免清除数据后代数回到旧值而被误判为未变化
+     */
+    static long nextGeneration(SharedPreferences sp) {
+        if (!sp.contains(KEY_GENERATION)) {
+            return System.currentTimeMillis();
+        }
+        return sp.getLong(KEY_GENERATION, 0L) + 1;
+    }
+
     /**
      * 确保 SharedPreferences 文件可被其他进程读取
      */
@@ -101,12 +128,80 @@ public class ConfigManager {
     // ... 其余方法保持不变（handleDiscoveredEngine, markMissingEnginesAsRemoved 等）
     // 只需要确保所有修改配置的方法最后都调用 saveEngines()
 
+    // ------------------------- 映射解析诊断 -------------------------
+
+    private static final String KEY_HOOK_DIAGNOSTICS = "hook_diagnostics";
+
+    /**
+     * 保存浏览器端上报的映射解析失败汇总（每行一个类），只覆盖上一份汇总，不改变配置代数
+     */
+    public static void saveHookDiagnostics(Context context, String[] lines) {
+        if (context == null) return;
+        String text = lines != null ? String.join("\n", lines) : "";
+        Log.w(TAG, "[APP] hook diagnostics:\n" + text);
+        getPrefs(context).edit().putString(KEY_HOOK_DIAGNOSTICS, text).apply();
+    }
+
     // ------------------------- 引擎发现与同步 -------------------------
 
     public static boolean handleDiscoveredEngine(Context context, String key, String name, String searchUrl) {
         if (context == null || key == null || key.isEmpty()) return false;
 
         List<SearchEngineConfig> engines = loadEngines(context);
+        if (applyDiscoveredEngine(engines, key, name, searchUrl)) {
+            saveEngines(context, engines);
+            return true;
+        }
+        return false;
+    }
+
+    public static void markMissingEnginesAsRemoved(Context context, Set<String> discoveredKeys) {
+        if (context == null || discoveredKeys == null) return;
+
+        List<SearchEngineConfig> engines = loadEngines(context);
+        if (applyMissingEngines(engines, discoveredKeys)) {
+            saveEngines(context, engines);
+        }
+    }
+
+    /**
+     * 批量处理一轮发现结果：只读取、写入一次配置
+     * complete 为 true 表示这是完整列表，未出现的内置引擎标记为已移除
+     */
+    public static boolean handleDiscoveredBatch(Context context, String[] keys, String[] names,
+                                                String[] searchUrls, boolean complete) {
+        if (context == null || keys == null) return false;
+
+        synchronized (ConfigManager.class) {
+            List<SearchEngineConfig> engines = loadEngines(context);
+            Set<String> discoveredKeys = new HashSet<>();
+            boolean changed = false;
+
+            for (int i = 0; i < keys.length; i++) {
+                String key = keys[i];
+                if (key == null || key.isEmpty()) continue;
+
+                String name = names != null && i < names.length ? names[i] : null;
+                String searchUrl = searchUrls != null && i < searchUrls.length ? searchUrls[i] : null;
+
+                discoveredKeys.add(key);
+                changed |= applyDiscoveredEngine(engines, key, name, searchUrl);
+            }
+
+            if (complete && !discoveredKeys.isEmpty()) {
+                changed |= applyMissingEngines(engines, discoveredKeys);
+            }
+
+            if (changed) {
+                saveEngines(context, engines);
+            }
+            Log.d(TAG, "[APP] discover batch: " + discoveredKeys.size() + " engines, changed=" + changed);
+            return changed;
+        }
+    }
+
+    private static boolean applyDiscoveredEngine(List<SearchEngineConfig> engines, String key,
+                                                 String name, String searchUrl) {
         SearchEngineConfig existing = findByKey(engines, key);
 
         if (existing == null) {
@@ -123,7 +218,6 @@ public class ConfigManager {
             newEngine.hasUpdate = false;
 
             engines.add(newEngine);
-            saveEngines(context, engines);
             Log.d(TAG, "[APP] discovered new engine: " + key + " (" + name + ")");
             return true;
 
@@ -146,37 +240,27 @@ public class ConfigManager {
                     existing.hasUpdate = false;
                     existing.pendingName = null;
                     existing.pendingSearchUrl = null;
-                    changed = true;
                 } else {
                     existing.hasUpdate = true;
                     existing.pendingName = name;
                     existing.pendingSearchUrl = searchUrl;
-                    changed = true;
                 }
+                changed = true;
             }
 
-            if (changed) {
-                saveEngines(context, engines);
-                return true;
-            }
+            return changed;
 
-        } else {
-            if (!existing.hasBuiltinConflict) {
-                existing.hasBuiltinConflict = true;
-                existing.conflictBuiltinName = name;
-                existing.conflictBuiltinSearchUrl = searchUrl;
-                saveEngines(context, engines);
-                return true;
-            }
+        } else if (!existing.hasBuiltinConflict) {
+            existing.hasBuiltinConflict = true;
+            existing.conflictBuiltinName = name;
+            existing.conflictBuiltinSearchUrl = searchUrl;
+            return true;
         }
 
         return false;
     }
 
-    public static void markMissingEnginesAsRemoved(Context context, Set<String> discoveredKeys) {
-        if (context == null || discoveredKeys == null) return;
-
-        List<SearchEngineConfig> engines = loadEngines(context);
+    private static boolean applyMissingEngines(List<SearchEngineConfig> engines, Set<String> discoveredKeys) {
         boolean changed = false;
 
         for (SearchEngineConfig engine : engines) {
@@ -195,9 +279,7 @@ public class ConfigManager {
             }
         }
 
-        if (changed) {
-            saveEngines(context, engines);
-        }
+        return changed;
     }
 
     public static void applyPendingUpdate(Context context, String key) {
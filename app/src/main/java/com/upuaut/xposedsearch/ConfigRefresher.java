@@ -0,0 +1,75 @@
+// app/src/main/java/com/upuaut/xposedsearch/ConfigRefresher.java
+package com.upuaut.xposedsearch;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Xposed 侧（浏览器进程）的低优先级后台线程
+ * 所有 Provider 读取都在这里异步执行，hook 只读取已发布的快照，不在帧关键路径上等待 binder
+ */
+public final class ConfigRefresher {
+
+    private static final String THREAD_NAME = "XposedSearch-Refresher";
+
+    private static volatile Handler handler = null;
+
+    private ConfigRefresher() {}
+
+    private static Handler getHandler() {
+        Handler h = handler;
+        if (h != null) return h;
+
+        synchronized (ConfigRefresher.class) {
+            if (handler == null) {
+                HandlerThread thread = new HandlerThread(THREAD_NAME, Process.THREAD_PRIORITY_BACKGROUND);
+                thread.start();
+                handler = new Handler(thread.getLooper());
+            }
+            return handler;
+        }
+    }
+
+    public static void post(Runnable task) {
+        getHandler().post(task);
+    }
+
+    public static void postDelayed(Runnable task, long delayMs) {
+        getHandler().postDelayed(task, delayMs);
+    }
+
+    public static void cancel(Runnable task) {
+        Handler h = handler;
+        if (h != null) {
+            h.removeCallbacks(task);
+        }
+    }
+
+    /**
+     * 可合并的刷新任务：排队期间重复的 request() 只会执行一次
+     */
+    public static final class CoalescingTask implements Runnable {
+        private final AtomicBoolean pending = new AtomicBoolean(false);
+        private final Runnable body;
+
+        public CoalescingTask(Runnable body) {
+            this.body = body;
+        }
+
+        public void request() {
+            if (pending.compareAndSet(false, true)) {
+                post(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            // 先清除标记，执行期间到达的请求会再排一次
+            pending.set(false);
+            body.run();
+        }
+    }
+}
@@ -0,0 +1,110 @@
+// app/src/main/java/com/upuaut/xposedsearch/ConfigSnapshot.java
+package com.upuaut.xposedsearch;
+
+import android.content.Context;
+
+import java.util.List;
+
+/**
+ * 引擎、热门网站、热词三份配置的统一快照
+ * Provider 端在模块进程中编码，Xposed 侧原样写入本地文件并按分区解码
+ */
+final class ConfigSnapshot {
+
+    static final int SECTION_ENGINES = 1;
+    static final int SECTION_HOTSITES = 2;
+    static final int SECTION_DARKWORD = 3;
+
+    // 引擎记录：key(4) name(4) searchUrl(4) flags(4)
+    static final int ENGINE_RECORD_WIDTH = 16;
+    static final int ENGINE_KEY = 0;
+    static final int ENGINE_NAME = 4;
+    static final int ENGINE_SEARCH_URL = 8;
+    static final int ENGINE_FLAGS = 12;
+    static final int ENGINE_ENABLED = 1;
+    static final int ENGINE_BUILTIN = 1 << 1;
+    static final int ENGINE_REMOVED = 1 << 2;
+    static final int ENGINE_CONFLICT = 1 << 3;
+
+    // 热门网站记录：id(8) name(4) url(4) iconUrl(4) order(4) enabled(4)，已按 order 排序
+    static final int SITE_RECORD_WIDTH = 28;
+    static final int SITE_ID = 0;
+    static final int SITE_NAME = 8;
+    static final int SITE_URL = 12;
+    static final int SITE_ICON_URL = 16;
+    static final int SITE_ORDER = 20;
+    static final int SITE_ENABLED = 24;
+    // 热门网站分区 flags
+    static final int HOTSITES_MODULE_ENABLED = 1;
+
+    // 热词分区没有记录，只用 flags
+    static final int DARKWORD_RECORD_WIDTH = 4;
+    static final int DARKWORD_MODULE_ENABLED = 1;
+    static final int DARKWORD_DISABLED = 1 << 1;
+
+    private ConfigSnapshot() {}
+
+    /**
+     * 当前三份配置的代数，顺序与 SECTION_* 一致
+     */
+    static long[] currentGenerations(Context context) {
+        return new long[]{
+                ConfigManager.getGeneration(context),
+                HotSiteConfigManager.getGeneration(context),
+                DarkWordConfigManager.getGeneration(context)
+        };
+    }
+
+    /**
+     * 编码完整快照（模块进程内调用）
+     * 先读代数再读数据：并发保存时数据可能比代数新，下次同步会再拉取一次，不会漏更新
+     */
+    static byte[] build(Context context, long[] generations) {
+        SnapshotFile.Builder builder = new SnapshotFile.Builder();
+
+        List<SearchEngineConfig> engines = ConfigManager.loadEngines(context);
+        builder.beginSection(SECTION_ENGINES, generations[0], 0, ENGINE_RECORD_WIDTH);
+        for (SearchEngineConfig cfg : engines) {
+            int flags = (cfg.enabled ? ENGINE_ENABLED : 0)
+                    | (cfg.isBuiltin ? ENGINE_BUILTIN : 0)
+                    | (cfg.isRemovedFromBrowser ? ENGINE_REMOVED : 0)
+                    | (cfg.hasBuiltinConflict ? ENGINE_CONFLICT : 0);
+            builder.beginRecord()
+                    .putString(cfg.key)
+                    .putString(cfg.name)
+                    .putString(cfg.searchUrl)
+                    .putInt(flags)
+                    .endRecord();
+        }
+
+        List<HotSiteConfig> sites = HotSiteConfigManager.loadSites(context);
+        int siteFlags = HotSiteConfigManager.isModuleEnabled(context) ? HOTSITES_MODULE_ENABLED : 0;
+        builder.beginSection(SECTION_HOTSITES, generations[1], siteFlags, SITE_RECORD_WIDTH);
+        boolean iconsMissing = false;
+        for (HotSiteConfig cfg : sites) {
+            // 图标已缓存时下发 content:// 地址，浏览器从本模块读取，不再自己下载原图
+            String iconUrl = HotSiteIconCache.cachedIconUri(context, cfg);
+            if (iconUrl == null) {
+                iconUrl = cfg.iconUrl != null ? cfg.iconUrl : "";
+                iconsMissing |= HotSiteIconCache.sourceUrl(cfg) != null;
+            }
+            builder.beginRecord()
+                    .putLong(cfg.id)
+                    .putString(cfg.name != null ? cfg.name : "")
+                    .putString(cfg.url != null ? cfg.url : "")
+                    .putString(iconUrl)
+                    .putInt(cfg.order)
+                    .putInt(cfg.enabled ? 1 : 0)
+                    .endRecord();
+        }
+        if (iconsMissing) {
+            HotSiteIconCache.prefetch(context, sites);
+        }
+
+        int darkWordFlags = (DarkWordConfigManager.isModuleEnabled(context) ? DARKWORD_MODULE_ENABLED : 0)
+                | (DarkWordConfigManager.isDarkWordDisabled(context) ? DARKWORD_DISABLED : 0);
+        builder.beginSection(SECTION_DARKWORD, generations[2], darkWordFlags, DARKWORD_RECORD_WIDTH);
+
+        return builder.build();
+    }
+}
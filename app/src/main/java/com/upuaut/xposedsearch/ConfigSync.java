@@ -0,0 +1,249 @@
+// app/src/main/java/com/upuaut/xposedsearch/ConfigSync.java
+package com.upuaut.xposedsearch;
+
+import android.content.Context;
+import android.database.ContentObserver;
+import android.net.Uri;
+import android.os.Bundle;
+
+import java.io.File;
+import java.io.IOException;
+
+import de.robv.android.xposed.XposedBridge;
+
+/**
+ * Xposed 侧的统一配置同步
+ * 一次 Provider.call() 拿到引擎、热门网站、热词三份配置及各自代数，
+ * 三个缓存共用同一个熔断器、后台刷新任务、ContentObserver 和本地快照文件
+ * Provider 读取全部在 ConfigRefresher 后台线程执行，ensureFresh() 不会阻塞调用线程
+ */
+final class ConfigSync {
+
+    private static final String TAG = "XposedSearch";
+    private static final Uri ROOT_URI = Uri.parse("content://" + ConfigManager.AUTHORITY + "/");
+    private static final String LOCAL_CACHE_FILE = "xposed_config.snap";
+    // 旧版按数据集拆分的本地缓存，写入统一快照后删除
+    private static final String[] LEGACY_CACHE_FILES = {"xposed_engines.snap", "xposed_hotsites.snap"};
+    // 顺序：引擎、热门网站、热词（loadLegacyCaches 按下标读取）
+    private static final String[] LEGACY_CACHE_PREFS = {
+            "xposed_search_cache", "xposed_hotsites_cache", "xposed_darkword_cache"
+    };
+
+    // 缓存有效期（仅在 ContentObserver 注册失败时作为兜底轮询）
+    private static final long CACHE_TTL_MS = 5000L;
+    private static volatile long lastSyncTime = 0L;
+
+    // 变更通知：任一数据集 notifyChange 后置脏并安排后台同步
+    private static volatile boolean dirty = true;
+    private static volatile boolean observerRegistered = false;
+    private static volatile boolean observerFailed = false;
+    private static ContentObserver observer = null;
+
+    private static volatile boolean localCacheLoaded = false;
+    private static volatile Context providerContext = null;
+
+    // 性能优化：Provider 失败熔断机制（半开探测在后台线程执行）
+    private static final ProviderCircuitBreaker breaker =
+            new ProviderCircuitBreaker("ConfigSync", ConfigSync::probe);
+
+    // 后台同步任务（重复请求合并）
+    private static final ConfigRefresher.CoalescingTask syncTask =
+            new ConfigRefresher.CoalescingTask(ConfigSync::syncInBackground);
+
+    private ConfigSync() {}
+
+    /**
+     * 各缓存读取前调用：冷启动时加载本地快照，过期或收到变更时安排后台同步
+     * 熔断器未关闭时只读已发布的缓存
+     */
+    static void ensureFresh(Context context) {
+        if (context != null) {
+            providerContext = context;
+            if (!localCacheLoaded) {
+                loadFromLocalCache(context);
+            }
+            if (!observerRegistered && !observerFailed) {
+                registerObserver(context);
+            }
+        }
+
+        // 熔断期间不再安排同步（否则每次读取都唤醒一次后台线程却什么也不做），恢复交给探测
+        if (!breaker.allowRequest()) return;
+
+        if (dirty || (!observerRegistered && System.currentTimeMillis() - lastSyncTime >= CACHE_TTL_MS)) {
+            syncTask.request();
+        }
+    }
+
+    /**
+     * 强制下一次同步（异步）
+     */
+    static void invalidate(Context context) {
+        dirty = true;
+        ensureFresh(context);
+    }
+
+    private static synchronized void registerObserver(Context context) {
+        if (observerRegistered || observerFailed) return;
+
+        try {
+            // handler 为 null 时回调在 binder 线程上执行，只置脏并交给后台同步
+            observer = new ContentObserver(null) {
+                @Override
+                public void onChange(boolean selfChange) {
+                    dirty = true;
+                    syncTask.request();
+                }
+            };
+            // engines / hotsites / darkword 都在同一 authority 下
+            context.getContentResolver().registerContentObserver(ROOT_URI, true, observer);
+            observerRegistered = true;
+            XposedBridge.log("[" + TAG + "] ConfigSync: ContentObserver registered");
+        } catch (Throwable t) {
+            observerFailed = true;
+            observer = null;
+            XposedBridge.log("[" + TAG + "] ConfigSync: ContentObserver register failed, fallback to TTL: " + t.getMessage());
+        }
+    }
+
+    /**
+     * 后台同步（ConfigRefresher 线程）：熔断器打开时跳过，由探测负责恢复
+     */
+    private static void syncInBackground() {
+        Context context = providerContext;
+        if (context == null || !breaker.allowRequest()) return;
+
+        if (sync(context)) {
+            breaker.recordSuccess();
+        } else {
+            breaker.recordFailure();
+        }
+    }
+
+    /**
+     * 熔断器半开探测（在后台线程执行）
+     */
+    private static boolean probe() {
+        Context context = providerContext;
+        return context != null && sync(context);
+    }
+
+    /**
+     * 带上已知代数请求快照；全部未变化时 Provider 只返回标记，不传输数据
+     */
+    private static boolean sync(Context context) {
+        // 先清除脏标记，同步期间到达的通知会重新置脏
+        dirty = false;
+
+        try {
+            Bundle extras = new Bundle();
+            extras.putLongArray(SearchEngineProvider.EXTRA_GENERATIONS, new long[]{
+                    PrefsCache.loadedGeneration(),
+                    HotSitePrefsCache.loadedGeneration(),
+                    DarkWordPrefsCache.loadedGeneration()
+            });
+
+            Bundle result = ProviderConnection.call(context,
+                    SearchEngineProvider.METHOD_GET_SNAPSHOT, null, extras);
+            if (result == null) {
+                dirty = true;
+                return false;
+            }
+
+            if (!result.getBoolean(SearchEngineProvider.EXTRA_UNCHANGED, false)) {
+                byte[] content = result.getByteArray(SearchEngineProvider.EXTRA_SNAPSHOT);
+                if (content == null) {
+                    dirty = true;
+                    return false;
+                }
+
+                apply(SnapshotFile.Reader.wrap(content));
+                saveToLocalCache(context, content);
+            }
+
+            lastSyncTime = System.currentTimeMillis();
+            return true;
+
+        } catch (Throwable t) {
+            dirty = true;
+            XposedBridge.log("[" + TAG + "] ConfigSync: Provider sync failed: " + t.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * 把快照分发给三个缓存，代数未变化的分区由各缓存自行跳过
+     */
+    private static void apply(SnapshotFile.Reader reader) throws IOException {
+        SnapshotFile.Section engines = reader.section(ConfigSnapshot.SECTION_ENGINES);
+        if (engines != null) PrefsCache.apply(engines);
+
+        SnapshotFile.Section sites = reader.section(ConfigSnapshot.SECTION_HOTSITES);
+        if (sites != null) HotSitePrefsCache.apply(sites);
+
+        SnapshotFile.Section darkWord = reader.section(ConfigSnapshot.SECTION_DARKWORD);
+        if (darkWord != null) DarkWordPrefsCache.apply(darkWord);
+    }
+
+    private static void saveToLocalCache(Context context, byte[] content) {
+        try {
+            if (SnapshotFile.writeIfChanged(localCacheFile(context), content)) {
+                deleteLegacyCaches(context);
+            }
+        } catch (Throwable t) {
+            XposedBridge.log("[" + TAG + "] ConfigSync: Save to local cache failed: " + t.getMessage());
+        }
+    }
+
+    /**
+     * 冷启动时从本地快照文件恢复三个缓存（内存映射读取，只执行一次）
+     * 标记在 apply 完成后才置位：其他线程在此之前会阻塞在锁上，不会提前安排后台同步，
+     * 避免 Provider 的新数据被随后应用的旧快照覆盖
+     */
+    private static synchronized void loadFromLocalCache(Context context) {
+        if (localCacheLoaded) return;
+
+        try {
+            SnapshotFile.Reader reader = SnapshotFile.Reader.open(localCacheFile(context));
+            if (reader == null) {
+                loadLegacyCaches(context);
+                return;
+            }
+
+            apply(reader);
+            XposedBridge.log("[" + TAG + "] ConfigSync: Loaded from local cache");
+        } catch (Throwable t) {
+            XposedBridge.log("[" + TAG + "] ConfigSync: Load from local cache failed: " + t.getMessage());
+        } finally {
+            localCacheLoaded = true;
+        }
+    }
+
+    /**
+     * 还没有统一快照文件（升级后首次启动）：从旧版 SharedPreferences 缓存恢复，
+     * 避免首次同步完成前引擎不过滤、热门网站显示浏览器默认值
+     * 旧缓存在第一次写入统一快照后才删除
+     */
+    private static void loadLegacyCaches(Context context) {
+        boolean migrated = PrefsCache.loadLegacy(context.getSharedPreferences(LEGACY_CACHE_PREFS[0], Context.MODE_PRIVATE));
+        migrated |= HotSitePrefsCache.loadLegacy(context.getSharedPreferences(LEGACY_CACHE_PREFS[1], Context.MODE_PRIVATE));
+        migrated |= DarkWordPrefsCache.loadLegacy(context.getSharedPreferences(LEGACY_CACHE_PREFS[2], Context.MODE_PRIVATE));
+        if (migrated) {
+            XposedBridge.log("[" + TAG + "] ConfigSync: Loaded from legacy caches");
+        }
+    }
+
+    private static void deleteLegacyCaches(Context context) {
+        File dir = context.getNoBackupFilesDir();
+        for (String name : LEGACY_CACHE_FILES) {
+            new File(dir, name).delete();
+        }
+        for (String name : LEGACY_CACHE_PREFS) {
+            context.deleteSharedPreferences(name);
+        }
+    }
+
+    private static File localCacheFile(Context context) {
+        return new File(context.getNoBackupFilesDir(), LOCAL_CACHE_FILE);
+    }
+}
@@ -14,6 +14,7 @@ public class DarkWordConfigManager {
     public static final String PREF_NAME = "xposed_dark_words";
     private static final String KEY_ENABLED = "module_enabled";
     private static final String KEY_DISABLED = "darkword_disabled";
+    private static final String KEY_GENERATION = "generation";
 
     public static final String AUTHORITY = "com.upuaut.xposedsearch.provider";
 
@@ -28,7 +29,13 @@ public class DarkWordConfigManager {
 
     public static void setModuleEnabled(Context context, boolean enabled) {
         if (context == null) return;
-        getPrefs(context).edit().putBoolean(KEY_ENABLED, enabled).commit();
+        SharedPreferences sp = getPrefs(context);
+        synchronized (DarkWordConfigManager.class) {
+            sp.edit()
+                    .putBoolean(KEY_ENABLED, enabled)
+                    .putLong(KEY_GENERATION, ConfigManager.nextGeneration(sp))
+                    .commit();
+        }
         makePrefsWorldReadable(context);
         notifyChange(context);
     }
@@ -40,11 +47,22 @@ public class DarkWordConfigManager {
 
     public static void setDarkWordDisabled(Context context, boolean disabled) {
         if (context == null) return;
-        getPrefs(context).edit().putBoolean(KEY_DISABLED, disabled).commit();
+        SharedPreferences sp = getPrefs(context);
+        synchronized (DarkWordConfigManager.class) {
+            sp.edit()
+                    .putBoolean(KEY_DISABLED, disabled)
+                    .putLong(KEY_GENERATION, ConfigManager.nextGeneration(sp))
+                    .commit();
+        }
         makePrefsWorldReadable(context);
         notifyChange(context);
     }
 
+    public static long getGeneration(Context context) {
+        if (context == null) return 0L;
+        return getPrefs(context).getLong(KEY_GENERATION, 0L);
+    }
+
     private static void makePrefsWorldReadable(Context context) {
         try {
             File prefsDir = new File(context.getApplicationInfo().dataDir, "shared_prefs");
@@ -25,6 +25,7 @@ public class HotSiteConfigManager {
     private static final String KEY_SITES = "sites";
     private static final String KEY_DEFAULT_SITES = "default_sites"; // 浏览器默认网站（用于恢复）
     private static final String KEY_ENABLED = "module_enabled";
+    private static final String KEY_GENERATION = "generation";
 
     public static final String AUTHORITY = "com.upuaut.xposedsearch.provider";
 
@@ -71,10 +72,17 @@ public class HotSiteConfigManager {
         Log.d(TAG, "[APP] saveSites size=" + list.size());
 
         SharedPreferences sp = getPrefs(context);
-        sp.edit().putString(KEY_SITES, json).commit();
+        synchronized (HotSiteConfigManager.class) {
+            sp.edit()
+                    .putString(KEY_SITES, json)
+                    .putLong(KEY_GENERATION, ConfigManager.nextGeneration(sp))
+                    .commit();
+        }
 
         makePrefsWorldReadable(context);
         notifyChange(context);
+        HotSiteIconCache.prefetch(context, list);
+        HotSiteIconCache.prune(context);
     }
 
     /**
@@ -114,7 +122,36 @@ public class HotSiteConfigManager {
 
     public static void setModuleEnabled(Context context, boolean enabled) {
         if (context == null) return;
-        getPrefs(context).edit().putBoolean(KEY_ENABLED, enabled).commit();
+        SharedPreferences sp = getPrefs(context);
+        synchronized (HotSiteConfigManager.class) {
+            sp.edit()
+                    .putBoolean(KEY_ENABLED, enabled)
+                    .putLong(KEY_GENERATION, ConfigManager.nextGeneration(sp))
+                    .commit();
+        }
+        makePrefsWorldReadable(context);
+        notifyChange(context);
+    }
+
+    /**
+     * 当前配置代数（用户列表或开关变化时递增，默认列表静默更新不计入）
+     */
+    public static long getGeneration(Context context) {
+        if (context == null) return 0L;
+        return getPrefs(context).getLong(KEY_GENERATION, 0L);
+    }
+
+    /**
+     * 列表内容不变但下发给浏览器的数据变化时（如图标缓存完成）递增代数并通知
+     */
+    static void touchGeneration(Context context) {
+        if (context == null) return;
+        SharedPreferences sp = getPrefs(context);
+        synchronized (HotSiteConfigManager.class) {
+            sp.edit()
+                    .putLong(KEY_GENERATION, ConfigManager.nextGeneration(sp))
+                    .commit();
+        }
         makePrefsWorldReadable(context);
         notifyChange(context);
     }
@@ -0,0 +1,277 @@
+// app/src/main/java/com/upuaut/xposedsearch/HotSiteIconCache.java
+package com.upuaut.xposedsearch;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.util.Log;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 模块端的热门网站图标缓存
+ * 图标只下载一次，缩放到磁贴尺寸后以 WebP 保存在 filesDir/hotsite_icons，
+ * 浏览器通过 content://AUTHORITY/icons/<name> 经 SearchEngineProvider.openFile 读取
+ *
+ * 网站没有配置图标时使用站点根目录的 /favicon.ico
+ */
+public final class HotSiteIconCache {
+
+    private static final String TAG = "XposedSearch";
+
+    public static final String ICON_PATH = "icons";
+    private static final String DIR_NAME = "hotsite_icons";
+    private static final String EXTENSION = ".webp";
+
+    private static final int TILE_SIZE_PX = 144;
+    private static final int WEBP_QUALITY = 85;
+    private static final int MAX_DOWNLOAD_BYTES = 1024 * 1024;
+    private static final int TIMEOUT_MS = 10_000;
+    // 下载失败后同一地址的重试间隔
+    private static final long RETRY_INTERVAL_MS = 6 * 60 * 60_000L;
+
+    private static final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "XposedSearch-IconCache");
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+
+    private static final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+    private static final Map<String, Long> failedAt = new ConcurrentHashMap<>();
+
+    private HotSiteIconCache() {}
+
+    /**
+     * 图标来源：配置的 iconUrl，没有时为站点的 /favicon.ico；URL 无法解析时返回 null
+     */
+    static String sourceUrl(HotSiteConfig site) {
+        if (site.iconUrl != null && !site.iconUrl.isEmpty()) {
+            return site.iconUrl.startsWith("content://") ? null : site.iconUrl;
+        }
+        if (site.url == null || site.url.isEmpty()) return null;
+
+        try {
+            URI uri = new URI(site.url);
+            if (uri.getScheme() == null || uri.getHost() == null) return null;
+            return uri.getScheme() + "://" + uri.getHost() + (uri.getPort() > 0 ? ":" + uri.getPort() : "") + "/favicon.ico";
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * 已缓存时返回供浏览器使用的 content:// 地址，否则返回 null
+     */
+    static String cachedIconUri(Context context, HotSiteConfig site) {
+        String source = sourceUrl(site);
+        if (source == null) return null;
+
+        String name = cacheName(source);
+        File file = new File(iconDir(context), name);
+        if (!file.exists()) return null;
+        return "content://" + HotSiteConfigManager.AUTHORITY + "/" + ICON_PATH + "/" + name;
+    }
+
+    /**
+     * Provider 读取用：只接受本类生成的文件名，防止路径穿越
+     */
+    static File iconFile(Context context, String name) {
+        if (context == null || name == null || !name.matches("^[0-9a-f]{32}\\.webp$")) return null;
+        return new File(iconDir(context), name);
+    }
+
+    /**
+     * 后台下载缺失的图标；没有需要下载的（已缓存、正在下载或最近失败）时不排队任何任务
+     * 有新图标缓存完成时递增热门网站配置代数，浏览器随之同步到指向缓存的地址
+     */
+    public static void prefetch(Context context, List<HotSiteConfig> sites) {
+        if (context == null || sites == null) return;
+
+        final Context appContext = context.getApplicationContext() != null ? context.getApplicationContext() : context;
+        final List<String> sources = new ArrayList<>();
+        long now = System.currentTimeMillis();
+
+        for (HotSiteConfig site : sites) {
+            String source = sourceUrl(site);
+            if (source == null) continue;
+            if (new File(iconDir(appContext), cacheName(source)).exists()) continue;
+            Long failed = failedAt.get(source);
+            if (failed != null && now - failed < RETRY_INTERVAL_MS) continue;
+            if (inFlight.add(source)) {
+                sources.add(source);
+            }
+        }
+        if (sources.isEmpty()) return;
+
+        executor.execute(() -> {
+            boolean stored = false;
+            for (String source : sources) {
+                try {
+                    stored |= store(appContext, source);
+                } finally {
+                    inFlight.remove(source);
+                }
+            }
+
+            if (stored) {
+                HotSiteConfigManager.touchGeneration(appContext);
+            }
+        });
+    }
+
+    private static boolean store(Context context, String source) {
+        try {
+            byte[] data = fetchHttp(source);
+            if (data == null || data.length == 0) throw new IOException("empty response");
+
+            Bitmap bitmap = decodeScaled(data);
+            if (bitmap == null) throw new IOException("not an image");
+
+            File dir = iconDir(context);
+            if (!dir.exists() && !dir.mkdirs()) throw new IOException("cannot create " + dir);
+
+            File target = new File(dir, cacheName(source));
+            File tmp = new File(dir, target.getName() + ".tmp");
+            try (FileOutputStream out = new FileOutputStream(tmp)) {
+                if (!bitmap.compress(Bitmap.CompressFormat.WEBP_LOSSY, WEBP_QUALITY, out)) {
+                    throw new IOException("compress failed");
+                }
+                out.getFD().sync();
+            } finally {
+                bitmap.recycle();
+            }
+            if (!tmp.renameTo(target)) {
+                tmp.delete();
+                throw new IOException("rename failed");
+            }
+
+            failedAt.remove(source);
+            Log.d(TAG, "[APP] icon cached: " + source + " -> " + target.getName());
+            return true;
+        } catch (Throwable t) {
+            failedAt.put(source, System.currentTimeMillis());
+            Log.w(TAG, "[APP] icon fetch failed: " + source + " (" + t.getMessage() + ")");
+            return false;
+        }
+    }
+
+    /**
+     * 先只读尺寸，按 2 的幂采样解码，再缩放到磁贴尺寸（保持比例，不放大）
+     */
+    private static Bitmap decodeScaled(byte[] data) {
+        BitmapFactory.Options bounds = new BitmapFactory.Options();
+        bounds.inJustDecodeBounds = true;
+        BitmapFactory.decodeByteArray(data, 0, data.length, bounds);
+        if (bounds.outWidth <= 0 || bounds.outHeight <= 0) return null;
+
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        int sample = 1;
+        while (Math.max(bounds.outWidth, bounds.outHeight) / (sample * 2) >= TILE_SIZE_PX) {
+            sample *= 2;
+        }
+        options.inSampleSize = sample;
+
+        Bitmap decoded = BitmapFactory.decodeByteArray(data, 0, data.length, options);
+        if (decoded == null) return null;
+
+        int width = decoded.getWidth();
+        int height = decoded.getHeight();
+        int max = Math.max(width, height);
+        if (max <= TILE_SIZE_PX) return decoded;
+
+        Bitmap scaled = Bitmap.createScaledBitmap(decoded,
+                Math.max(1, width * TILE_SIZE_PX / max),
+                Math.max(1, height * TILE_SIZE_PX / max), true);
+        if (scaled != decoded) decoded.recycle();
+        return scaled;
+    }
+
+    /**
+     * 后台删除不再被任何网站引用的缓存文件（网站列表保存后调用）
+     */
+    public static void prune(Context context) {
+        if (context == null) return;
+        final Context appContext = context.getApplicationContext() != null ? context.getApplicationContext() : context;
+        executor.execute(() -> pruneUnreferenced(appContext));
+    }
+
+    /**
+     * 按执行时的最新列表判断引用，避免较早排队的任务删掉刚保存的网站所需的图标
+     */
+    private static void pruneUnreferenced(Context context) {
+        Set<String> referenced = new HashSet<>();
+        for (HotSiteConfig site : HotSiteConfigManager.loadSites(context)) {
+            String source = sourceUrl(site);
+            if (source != null) referenced.add(cacheName(source));
+        }
+
+        File[] files = iconDir(context).listFiles();
+        if (files == null) return;
+        for (File file : files) {
+            if (!referenced.contains(file.getName())) {
+                file.delete();
+            }
+        }
+    }
+
+    private static File iconDir(Context context) {
+        return new File(context.getFilesDir(), DIR_NAME);
+    }
+
+    /**
+     * 来源地址的 SHA-256 前 16 字节（十六进制）作为文件名
+     */
+    private static String cacheName(String source) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(source.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder(32 + EXTENSION.length());
+            for (int i = 0; i < 16; i++) {
+                sb.append(Character.forDigit((digest[i] >> 4) & 0xF, 16)).append(Character.forDigit(digest[i] & 0xF, 16));
+            }
+            return sb.append(EXTENSION).toString();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] fetchHttp(String url) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setConnectTimeout(TIMEOUT_MS);
+        connection.setReadTimeout(TIMEOUT_MS);
+        connection.setInstanceFollowRedirects(true);
+        try {
+            int code = connection.getResponseCode();
+            if (code != HttpURLConnection.HTTP_OK) throw new IOException("HTTP " + code);
+
+            try (InputStream in = connection.getInputStream()) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                byte[] buffer = new byte[8192];
+                int n;
+                while ((n = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, n);
+                    if (out.size() > MAX_DOWNLOAD_BYTES) throw new IOException("icon too large");
+                }
+                return out.toByteArray();
+            }
+        } finally {
+            connection.disconnect();
+        }
+    }
+}
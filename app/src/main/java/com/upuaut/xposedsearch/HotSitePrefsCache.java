@@ -1,11 +1,8 @@
 // app/src/main/java/com/upuaut/xposedsearch/HotSitePrefsCache.java
 package com.upuaut.xposedsearch;
 
-import android.content.ContentResolver;
 import android.content.Context;
 import android.content.SharedPreferences;
-import android.database.Cursor;
-import android.net.Uri;
 
 import java.util.ArrayList;
 import java.util.Collections;
@@ -16,25 +13,16 @@ import de.robv.android.xposed.XposedBridge;
 
 /**
  * Xposed 侧的热门网站配置缓存
+ * 数据由 ConfigSync 在后台线程同步后发布到这里
+ * 开关、列表与代数组成一个不可变快照，通过 volatile 引用一次性发布，读者不会看到新代数配旧列表
  */
 public class HotSitePrefsCache {
 
     private static final String TAG = "XposedSearch";
-    private static final String PROVIDER_URI = "content://com.upuaut.xposedsearch.provider/hotsites";
-    private static final String LOCAL_CACHE_PREF = "xposed_hotsites_cache";
+    private static final long UNKNOWN_GENERATION = -1L;
 
-    // 内存缓存
-    private static final List<SiteConfig> memoryCacheList = new ArrayList<>();
-    private static boolean moduleEnabled = true;
-
-    // 缓存有效期
-    private static final long CACHE_TTL_MS = 5000L;
-    private static long lastLoadTime = 0L;
-
-    // 性能优化：Provider 失败熔断机制
-    private static int providerFailureCount = 0;
-    private static final int MAX_FAILURES = 3;
-    private static boolean providerCircuitOpen = false;
+    // 内存缓存：当前发布的不可变快照
+    private static volatile Snapshot snapshot = Snapshot.EMPTY;
 
     public static class SiteConfig {
         public long id;
@@ -56,169 +44,116 @@ public class HotSitePrefsCache {
         }
     }
 
-    public static boolean isModuleEnabled() {
-        return moduleEnabled;
-    }
-
-    public static List<SiteConfig> getSiteConfigs(Context context) {
-        long now = System.currentTimeMillis();
+    /**
+     * 一次同步的完整结果：模块开关 + 网站列表（不可修改）+ 配置代数
+     */
+    public static final class Snapshot {
+        static final Snapshot EMPTY = new Snapshot(true, Collections.emptyList(), UNKNOWN_GENERATION);
 
-        if (now - lastLoadTime < CACHE_TTL_MS && !memoryCacheList.isEmpty()) {
-            return new ArrayList<>(memoryCacheList);
-        }
+        public final boolean moduleEnabled;
+        public final List<SiteConfig> sites;
+        public final long generation;
 
-        if (!providerCircuitOpen) {
-            if (loadFromProvider(context)) {
-                lastLoadTime = now;
-                providerFailureCount = 0;
-                saveToLocalCache(context);
-                return new ArrayList<>(memoryCacheList);
-            } else {
-                providerFailureCount++;
-                if (providerFailureCount >= MAX_FAILURES) {
-                    providerCircuitOpen = true;
-                    XposedBridge.log("[" + TAG + "] HotSitePrefs: Provider failed " + MAX_FAILURES + " times. Circuit breaker OPEN.");
-                }
-            }
+        Snapshot(boolean moduleEnabled, List<SiteConfig> sites, long generation) {
+            this.moduleEnabled = moduleEnabled;
+            this.sites = sites;
+            this.generation = generation;
         }
+    }
 
-        if (!memoryCacheList.isEmpty()) {
-            if (!providerCircuitOpen) XposedBridge.log("[" + TAG + "] HotSites: Using memory cache");
-            return new ArrayList<>(memoryCacheList);
-        }
+    public static boolean isModuleEnabled() {
+        return snapshot.moduleEnabled;
+    }
 
-        if (loadFromLocalCache(context)) {
-            XposedBridge.log("[" + TAG + "] HotSites: Loaded from local cache");
-            return new ArrayList<>(memoryCacheList);
-        }
+    /**
+     * 当前快照；需要同时使用列表和代数的调用方应只读取一次，保证两者一致
+     */
+    public static Snapshot getSnapshot(Context context) {
+        ConfigSync.ensureFresh(context);
+        return snapshot;
+    }
 
-        return new ArrayList<>();
+    /**
+     * 不会在调用线程访问 Provider；需要刷新时交给后台线程，先返回当前快照
+     */
+    public static List<SiteConfig> getSiteConfigs(Context context) {
+        ConfigSync.ensureFresh(context);
+        return new ArrayList<>(snapshot.sites);
     }
 
     public static void refresh(Context context) {
-        lastLoadTime = 0;
-        getSiteConfigs(context);
+        ConfigSync.ensureFresh(context);
     }
 
     public static void clearMemoryCache() {
-        memoryCacheList.clear();
-        lastLoadTime = 0;
+        snapshot = Snapshot.EMPTY;
+        ConfigSync.invalidate(null);
     }
 
-    private static boolean loadFromProvider(Context context) {
-        if (context == null) return false;
-
-        Cursor cursor = null;
-        try {
-            ContentResolver resolver = context.getContentResolver();
-            Uri uri = Uri.parse(PROVIDER_URI);
-
-            cursor = resolver.query(uri, null, null, null, null);
-            if (cursor == null) {
-                return false;
-            }
-
-            memoryCacheList.clear();
-
-            // 读取模块启用状态
-            int enabledIndex = cursor.getColumnIndex("moduleEnabled");
-            if (enabledIndex >= 0 && cursor.moveToFirst()) {
-                moduleEnabled = cursor.getInt(enabledIndex) == 1;
-                cursor.moveToPrevious();
-            }
-
-            while (cursor.moveToNext()) {
-                long id = cursor.getLong(cursor.getColumnIndexOrThrow("id"));
-                String name = cursor.getString(cursor.getColumnIndexOrThrow("name"));
-                String url = cursor.getString(cursor.getColumnIndexOrThrow("url"));
-                String iconUrl = cursor.getString(cursor.getColumnIndexOrThrow("iconUrl"));
-                boolean enabled = cursor.getInt(cursor.getColumnIndexOrThrow("enabled")) == 1;
-                int order = cursor.getInt(cursor.getColumnIndexOrThrow("order"));
-
-                memoryCacheList.add(new SiteConfig(id, name, url, iconUrl, enabled, order));
-            }
-
-            // 按 order 排序
-            Collections.sort(memoryCacheList, Comparator.comparingInt(a -> a.order));
-
-            XposedBridge.log("[" + TAG + "] HotSites: Loaded " + memoryCacheList.size() + " sites from provider");
-            return true;
-
-        } catch (Throwable t) {
-            XposedBridge.log("[" + TAG + "] HotSites: Provider load failed: " + t.getMessage());
-            return false;
-        } finally {
-            if (cursor != null) {
-                try {
-                    cursor.close();
-                } catch (Exception ignored) {}
-            }
-        }
+    /**
+     * 当前已加载配置的代数，用于调用方按代数缓存派生数据
+     */
+    public static long getGeneration(Context context) {
+        ConfigSync.ensureFresh(context);
+        return snapshot.generation;
     }
 
-    private static void saveToLocalCache(Context context) {
-        if (context == null || memoryCacheList.isEmpty()) return;
-
-        try {
-            SharedPreferences sp = context.getSharedPreferences(LOCAL_CACHE_PREF, Context.MODE_PRIVATE);
-            SharedPreferences.Editor editor = sp.edit();
-
-            editor.clear();
-            editor.putBoolean("module_enabled", moduleEnabled);
-            editor.putInt("site_count", memoryCacheList.size());
-
-            for (int i = 0; i < memoryCacheList.size(); i++) {
-                SiteConfig config = memoryCacheList.get(i);
-                String prefix = "site_" + i + "_";
-                editor.putLong(prefix + "id", config.id);
-                editor.putString(prefix + "name", config.name);
-                editor.putString(prefix + "url", config.url);
-                editor.putString(prefix + "iconUrl", config.iconUrl);
-                editor.putBoolean(prefix + "enabled", config.enabled);
-                editor.putInt(prefix + "order", config.order);
-            }
-
-            editor.apply();
-
-        } catch (Throwable t) {
-            XposedBridge.log("[" + TAG + "] HotSites: Save to local cache failed: " + t.getMessage());
-        }
+    static long loadedGeneration() {
+        return snapshot.generation;
     }
 
-    private static boolean loadFromLocalCache(Context context) {
-        if (context == null) return false;
-
-        try {
-            SharedPreferences sp = context.getSharedPreferences(LOCAL_CACHE_PREF, Context.MODE_PRIVATE);
-            int count = sp.getInt("site_count", 0);
-
-            if (count == 0) return false;
-
-            memoryCacheList.clear();
-            moduleEnabled = sp.getBoolean("module_enabled", true);
-
-            for (int i = 0; i < count; i++) {
-                String prefix = "site_" + i + "_";
-                long id = sp.getLong(prefix + "id", 0);
-                if (id == 0) continue;
-
-                SiteConfig config = new SiteConfig();
-                config.id = id;
-                config.name = sp.getString(prefix + "name", "");
-                config.url = sp.getString(prefix + "url", "");
-                config.iconUrl = sp.getString(prefix + "iconUrl", "");
-                config.enabled = sp.getBoolean(prefix + "enabled", true);
-                config.order = sp.getInt(prefix + "order", i);
-
-                memoryCacheList.add(config);
-            }
+    /**
+     * 发布同步得到的热门网站分区（记录已按 order 排序）；代数未变化时跳过
+     */
+    static void apply(SnapshotFile.Section section) {
+        Snapshot current = snapshot;
+        if (section.generation() == current.generation && !current.sites.isEmpty()) return;
+
+        int count = section.recordCount();
+        List<SiteConfig> list = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            long id = section.getLong(i, ConfigSnapshot.SITE_ID);
+            if (id == 0) continue;
+
+            list.add(new SiteConfig(id,
+                    section.getString(i, ConfigSnapshot.SITE_NAME),
+                    section.getString(i, ConfigSnapshot.SITE_URL),
+                    section.getString(i, ConfigSnapshot.SITE_ICON_URL),
+                    section.getInt(i, ConfigSnapshot.SITE_ENABLED) != 0,
+                    section.getInt(i, ConfigSnapshot.SITE_ORDER)));
+        }
 
-            Collections.sort(memoryCacheList, Comparator.comparingInt(a -> a.order));
-            return !memoryCacheList.isEmpty();
+        boolean moduleEnabled = (section.flags() & ConfigSnapshot.HOTSITES_MODULE_ENABLED) != 0;
+        snapshot = new Snapshot(moduleEnabled, Collections.unmodifiableList(list), section.generation());
+        XposedBridge.log("[" + TAG + "] HotSites: Loaded " + list.size() + " sites (generation " + section.generation() + ")");
+    }
 
-        } catch (Throwable t) {
-            XposedBridge.log("[" + TAG + "] HotSites: Load from local cache failed: " + t.getMessage());
-            return false;
+    /**
+     * 升级后首次启动：读取旧版按字段保存的本地缓存（site_i_*），只在尚未加载任何数据时发布
+     */
+    static boolean loadLegacy(SharedPreferences sp) {
+        int count = sp.getInt("site_count", 0);
+        if (count == 0 || !snapshot.sites.isEmpty()) return false;
+
+        List<SiteConfig> list = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String prefix = "site_" + i + "_";
+            long id = sp.getLong(prefix + "id", 0);
+            if (id == 0) continue;
+
+            list.add(new SiteConfig(id,
+                    sp.getString(prefix + "name", ""),
+                    sp.getString(prefix + "url", ""),
+                    sp.getString(prefix + "iconUrl", ""),
+                    sp.getBoolean(prefix + "enabled", true),
+                    sp.getInt(prefix + "order", i)));
         }
+        if (list.isEmpty()) return false;
+
+        Collections.sort(list, Comparator.comparingInt(a -> a.order));
+        snapshot = new Snapshot(sp.getBoolean("module_enabled", true), Collections.unmodifiableList(list),
+                sp.getLong("generation", UNKNOWN_GENERATION));
+        XposedBridge.log("[" + TAG + "] HotSites: Migrated " + list.size() + " sites from legacy cache");
+        return true;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,109 @@
+// app/src/main/java/com/upuaut/xposedsearch/ProviderCircuitBreaker.java
+package com.upuaut.xposedsearch;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import de.robv.android.xposed.XposedBridge;
+
+/**
+ * Provider 访问熔断器：CLOSED -> OPEN -> HALF_OPEN -> CLOSED
+ * <p>
+ * 失败一次即打开，之后 hook 线程不再访问 Provider；
+ * 恢复探测按指数退避（带抖动）在 {@link ConfigRefresher} 后台线程执行，成功后自动关闭。
+ */
+public class ProviderCircuitBreaker {
+
+    private static final String TAG = "XposedSearch";
+
+    private static final long BASE_BACKOFF_MS = 1000L;
+    private static final long MAX_BACKOFF_MS = 5 * 60 * 1000L;
+    private static final double JITTER_RATIO = 0.2;
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    /**
+     * 后台探测：返回 true 表示 Provider 已恢复
+     */
+    public interface Probe {
+        boolean run();
+    }
+
+    private final String name;
+    private final Probe probe;
+    private final Runnable probeTask = this::runProbe;
+
+    // volatile：allowRequest() 在 hook 热路径上无锁读取
+    private volatile State state = State.CLOSED;
+    private int consecutiveFailures = 0;
+
+    public ProviderCircuitBreaker(String name, Probe probe) {
+        this.name = name;
+        this.probe = probe;
+    }
+
+    /**
+     * hook 线程调用：只有 CLOSED 状态才允许直接访问 Provider
+     */
+    public boolean allowRequest() {
+        return state == State.CLOSED;
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    public synchronized void recordSuccess() {
+        if (state != State.CLOSED) {
+            XposedBridge.log("[" + TAG + "] " + name + ": Provider recovered, circuit breaker CLOSED");
+        }
+        state = State.CLOSED;
+        consecutiveFailures = 0;
+        ConfigRefresher.cancel(probeTask);
+    }
+
+    /**
+     * 记录一次失败：打开熔断器并安排下一次后台探测
+     */
+    public void recordFailure() {
+        long backoff;
+        synchronized (this) {
+            consecutiveFailures++;
+            if (state == State.OPEN) {
+                // 已有探测在排队，不重复安排
+                return;
+            }
+            state = State.OPEN;
+            backoff = computeBackoff(consecutiveFailures);
+            XposedBridge.log("[" + TAG + "] " + name + ": Provider failed " + consecutiveFailures
+                    + " time(s). Circuit breaker OPEN, next probe in " + backoff + "ms");
+        }
+        ConfigRefresher.postDelayed(probeTask, backoff);
+    }
+
+    private void runProbe() {
+        synchronized (this) {
+            if (state != State.OPEN) return;
+            state = State.HALF_OPEN;
+        }
+
+        boolean recovered;
+        try {
+            recovered = probe.run();
+        } catch (Throwable t) {
+            recovered = false;
+        }
+
+        if (recovered) {
+            recordSuccess();
+        } else {
+            recordFailure();
+        }
+    }
+
+    private static long computeBackoff(int failures) {
+        int shift = Math.min(failures - 1, 20);
+        long backoff = Math.min(MAX_BACKOFF_MS, BASE_BACKOFF_MS << shift);
+        double jitter = 1.0 + ThreadLocalRandom.current().nextDouble(-JITTER_RATIO, JITTER_RATIO);
+        return (long) (backoff * jitter);
+    }
+}
@@ -0,0 +1,107 @@
+// app/src/main/java/com/upuaut/xposedsearch/ProviderConnection.java
+package com.upuaut.xposedsearch;
+
+import android.content.ContentProviderClient;
+import android.content.ContentValues;
+import android.content.Context;
+import android.net.Uri;
+import android.os.Bundle;
+import android.os.DeadObjectException;
+import android.os.RemoteException;
+
+import de.robv.android.xposed.XposedBridge;
+
+/**
+ * Xposed 侧（浏览器进程）到模块 Provider 的长连接
+ * 复用同一个 unstable ContentProviderClient，避免每次经 ContentResolver 重复 acquire/release；
+ * 模块进程被杀（DeadObjectException）时重连一次，空闲一段时间后释放
+ */
+public final class ProviderConnection {
+
+    private static final String TAG = "XposedSearch";
+
+    // 最后一次调用结束后多久释放连接
+    private static final long IDLE_RELEASE_MS = 30_000L;
+
+    private static final Object lock = new Object();
+    private static ContentProviderClient client = null;
+    private static int inFlight = 0;
+
+    private static final Runnable releaseTask = ProviderConnection::releaseIfIdle;
+
+    private interface Operation<T> {
+        T run(ContentProviderClient client) throws RemoteException;
+    }
+
+    private ProviderConnection() {}
+
+    public static Bundle call(Context context, String method, String arg, Bundle extras) throws RemoteException {
+        return execute(context, c -> c.call(method, arg, extras));
+    }
+
+    public static Uri insert(Context context, Uri uri, ContentValues values) throws RemoteException {
+        return execute(context, c -> c.insert(uri, values));
+    }
+
+    private static <T> T execute(Context context, Operation<T> operation) throws RemoteException {
+        for (int attempt = 0; ; attempt++) {
+            ContentProviderClient c = acquire(context);
+            try {
+                return operation.run(c);
+            } catch (DeadObjectException e) {
+                // 模块进程已死亡，丢弃旧连接后重试一次
+                invalidate(c);
+                if (attempt > 0) throw e;
+                XposedBridge.log("[" + TAG + "] ProviderConnection: Provider died, reconnecting");
+            } finally {
+                releaseReference();
+            }
+        }
+    }
+
+    private static ContentProviderClient acquire(Context context) throws RemoteException {
+        synchronized (lock) {
+            if (client == null) {
+                if (context == null) throw new RemoteException("no context");
+                client = context.getContentResolver().acquireUnstableContentProviderClient(ConfigManager.AUTHORITY);
+                if (client == null) throw new RemoteException("provider unavailable");
+            }
+            inFlight++;
+            ConfigRefresher.cancel(releaseTask);
+            return client;
+        }
+    }
+
+    private static void releaseReference() {
+        synchronized (lock) {
+            inFlight--;
+            if (inFlight == 0 && client != null) {
+                ConfigRefresher.postDelayed(releaseTask, IDLE_RELEASE_MS);
+            }
+        }
+    }
+
+    private static void invalidate(ContentProviderClient dead) {
+        synchronized (lock) {
+            if (client != dead) return;
+            client = null;
+        }
+        closeQuietly(dead);
+    }
+
+    private static void releaseIfIdle() {
+        ContentProviderClient idle;
+        synchronized (lock) {
+            if (inFlight > 0 || client == null) return;
+            idle = client;
+            client = null;
+        }
+        closeQuietly(idle);
+    }
+
+    private static void closeQuietly(ContentProviderClient c) {
+        try {
+            c.close();
+        } catch (Throwable ignored) {}
+    }
+}
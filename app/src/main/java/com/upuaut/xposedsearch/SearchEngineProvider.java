@@ -7,12 +7,17 @@ import android.content.UriMatcher;
 import android.database.Cursor;
 import android.database.MatrixCursor;
 import android.net.Uri;
+import android.os.Bundle;
+import android.os.ParcelFileDescriptor;
 import android.util.Log;
 
 import org.json.JSONArray;
 import org.json.JSONObject;
 
+import java.io.File;
+import java.io.FileNotFoundException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -32,12 +37,32 @@ public class SearchEngineProvider extends ContentProvider {
 
     public static final Uri DARKWORD_URI = Uri.parse("content://" + AUTHORITY + "/darkword");
 
+    // call() 方法：一次返回引擎、热门网站、热词三份配置的二进制快照
+    // 调用方在 extras 中带上已知代数，全部未变化时只返回 EXTRA_UNCHANGED
+    public static final String METHOD_GET_SNAPSHOT = "get_snapshot";
+    public static final String EXTRA_GENERATIONS = "generations";
+    public static final String EXTRA_SNAPSHOT = "snapshot";
+    public static final String EXTRA_UNCHANGED = "unchanged";
+
+    // call() 方法：一次上报整轮发现的引擎列表，Provider 端只读写一次配置
+    public static final String METHOD_DISCOVER_BATCH = "discover_batch";
+    public static final String EXTRA_KEYS = "keys";
+    public static final String EXTRA_NAMES = "names";
+    public static final String EXTRA_SEARCH_URLS = "searchUrls";
+    public static final String EXTRA_COMPLETE = "complete";
+    public static final String EXTRA_CHANGED = "changed";
+
+    // call() 方法：浏览器端映射解析失败时上报各类的失败次数与最近原因
+    public static final String METHOD_REPORT_DIAGNOSTICS = "report_diagnostics";
+    public static final String EXTRA_DIAGNOSTICS = "diagnostics";
+
     private static final int CODE_ENGINES = 1;
     private static final int CODE_DISCOVER = 2;
     private static final int CODE_DISCOVER_COMPLETE = 3;
     private static final int CODE_HOTSITES = 4;
     private static final int CODE_HOTSITES_DISCOVER = 5;
     private static final int CODE_DARKWORD = 6;
+    private static final int CODE_ICON = 7;
 
     private static final UriMatcher uriMatcher = new UriMatcher(UriMatcher.NO_MATCH);
 
@@ -48,6 +73,7 @@ public class SearchEngineProvider extends ContentProvider {
         uriMatcher.addURI(AUTHORITY, "hotsites", CODE_HOTSITES);
         uriMatcher.addURI(AUTHORITY, "hotsites_discover", CODE_HOTSITES_DISCOVER);
         uriMatcher.addURI(AUTHORITY, "darkword", CODE_DARKWORD);
+        uriMatcher.addURI(AUTHORITY, HotSiteIconCache.ICON_PATH + "/*", CODE_ICON);
     }
 
     private Set<String> currentDiscoveredKeys = new HashSet<>();
@@ -83,6 +109,44 @@ public class SearchEngineProvider extends ContentProvider {
         return null;
     }
 
+    @Override
+    public Bundle call(String method, String arg, Bundle extras) {
+        if (METHOD_GET_SNAPSHOT.equals(method)) {
+            long[] generations = ConfigSnapshot.currentGenerations(getContext());
+            long[] known = extras != null ? extras.getLongArray(EXTRA_GENERATIONS) : null;
+
+            Bundle result = new Bundle();
+            if (Arrays.equals(known, generations)) {
+                result.putBoolean(EXTRA_UNCHANGED, true);
+            } else {
+                result.putByteArray(EXTRA_SNAPSHOT, ConfigSnapshot.build(getContext(), generations));
+            }
+            return result;
+        }
+
+        if (METHOD_DISCOVER_BATCH.equals(method)) {
+            Bundle result = new Bundle();
+            if (extras != null) {
+                boolean changed = ConfigManager.handleDiscoveredBatch(getContext(),
+                        extras.getStringArray(EXTRA_KEYS),
+                        extras.getStringArray(EXTRA_NAMES),
+                        extras.getStringArray(EXTRA_SEARCH_URLS),
+                        extras.getBoolean(EXTRA_COMPLETE, false));
+                result.putBoolean(EXTRA_CHANGED, changed);
+            }
+            return result;
+        }
+
+        if (METHOD_REPORT_DIAGNOSTICS.equals(method)) {
+            if (extras != null) {
+                ConfigManager.saveHookDiagnostics(getContext(), extras.getStringArray(EXTRA_DIAGNOSTICS));
+            }
+            return new Bundle();
+        }
+
+        return super.call(method, arg, extras);
+    }
+
     private MatrixCursor buildEnginesCursor(List<SearchEngineConfig> engines) {
         String[] columns = {
                 "key", "name", "searchUrl", "enabled",
@@ -218,6 +282,25 @@ public class SearchEngineProvider extends ContentProvider {
 
     @Override
     public String getType(Uri uri) {
+        if (uriMatcher.match(uri) == CODE_ICON) {
+            return "image/webp";
+        }
         return "vnd.android.cursor.dir/vnd.xposedsearch";
     }
+
+    /**
+     * 只读提供已缓存的热门网站图标
+     */
+    @Override
+    public ParcelFileDescriptor openFile(Uri uri, String mode) throws FileNotFoundException {
+        if (uriMatcher.match(uri) != CODE_ICON || !"r".equals(mode)) {
+            throw new FileNotFoundException(uri.toString());
+        }
+
+        File file = HotSiteIconCache.iconFile(getContext(), uri.getLastPathSegment());
+        if (file == null || !file.exists()) {
+            throw new FileNotFoundException(uri.toString());
+        }
+        return ParcelFileDescriptor.open(file, ParcelFileDescriptor.MODE_READ_ONLY);
+    }
 }
\ No newline at end of file
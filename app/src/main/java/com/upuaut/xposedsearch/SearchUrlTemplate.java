@@ -0,0 +1,314 @@
+// app/src/main/java/com/upuaut/xposedsearch/SearchUrlTemplate.java
+package com.upuaut.xposedsearch;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 预编译的搜索 URL 模板
+ * 模板只解析一次为片段列表，展开时单次遍历写入预分配的 StringBuilder
+ *
+ * 支持的占位符：
+ *   {searchTerms} / %s   查询词（与 URLEncoder.encode 结果一致，空格编码为 +）
+ *   {inputEncoding}      模板使用的字符集
+ *   {language}           当前系统语言
+ *   {startPage?}         起始页，固定为 1
+ *   其他 {xxx?}          可选参数，展开为空
+ *
+ * 模板中带有 ie= / charset= / inputEncoding= 等字面参数时（如 ie=gbk），查询词按该字符集编码，
+ * 否则使用 UTF-8
+ */
+public final class SearchUrlTemplate {
+
+    private static final int LITERAL = 0;
+    private static final int SEARCH_TERMS = 1;
+    private static final int INPUT_ENCODING = 2;
+    private static final int LANGUAGE = 3;
+    private static final int START_PAGE = 4;
+
+    private static final String[] CHARSET_PARAMS = {"ie", "charset", "inputencoding", "input_encoding", "enc"};
+
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    private final int[] kinds;
+    private final String[] literals;
+    private final int literalLength;
+    private final Charset charset;
+    private final boolean utf8;
+
+    // 非 UTF-8 字符集的编码器不是线程安全的，每个线程复用一份
+    private final ThreadLocal<EncoderState> encoderState;
+
+    private static final class EncoderState {
+        final CharsetEncoder encoder;
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+
+        EncoderState(Charset charset) {
+            encoder = charset.newEncoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        }
+    }
+
+    private SearchUrlTemplate(int[] kinds, String[] literals, Charset charset) {
+        this.kinds = kinds;
+        this.literals = literals;
+        this.charset = charset;
+        this.utf8 = StandardCharsets.UTF_8.equals(charset);
+        this.encoderState = utf8 ? null : ThreadLocal.withInitial(() -> new EncoderState(charset));
+
+        int length = 0;
+        for (String literal : literals) {
+            if (literal != null) length += literal.length();
+        }
+        this.literalLength = length;
+    }
+
+    public static SearchUrlTemplate compile(String template) {
+        if (template == null) template = "";
+
+        List<Integer> kinds = new ArrayList<>();
+        List<String> literals = new ArrayList<>();
+
+        boolean hasSearchTerms = template.contains("{searchTerms}");
+        boolean percentS = !hasSearchTerms && template.contains("%s");
+
+        StringBuilder literal = new StringBuilder();
+        int i = 0;
+        int n = template.length();
+        while (i < n) {
+            char c = template.charAt(i);
+
+            if (percentS && c == '%' && i + 1 < n && template.charAt(i + 1) == 's') {
+                flushLiteral(literal, kinds, literals);
+                kinds.add(SEARCH_TERMS);
+                literals.add(null);
+                i += 2;
+                continue;
+            }
+
+            if (c == '{') {
+                int end = template.indexOf('}', i + 1);
+                if (end > i) {
+                    int kind = placeholderKind(template.substring(i + 1, end));
+                    if (kind >= 0) {
+                        flushLiteral(literal, kinds, literals);
+                        if (kind != LITERAL) {
+                            kinds.add(kind);
+                            literals.add(null);
+                        }
+                        i = end + 1;
+                        continue;
+                    }
+                }
+            }
+
+            literal.append(c);
+            i++;
+        }
+
+        // 没有任何查询词占位符时，沿用追加 q= 参数的约定
+        if (!hasSearchTerms && !percentS) {
+            literal.append(template.contains("?") ? "&q=" : "?q=");
+            flushLiteral(literal, kinds, literals);
+            kinds.add(SEARCH_TERMS);
+            literals.add(null);
+        }
+        flushLiteral(literal, kinds, literals);
+
+        int[] kindArray = new int[kinds.size()];
+        for (int k = 0; k < kindArray.length; k++) {
+            kindArray[k] = kinds.get(k);
+        }
+        return new SearchUrlTemplate(kindArray, literals.toArray(new String[0]), detectCharset(template));
+    }
+
+    /**
+     * 返回占位符类型；LITERAL 表示展开为空的可选参数，-1 表示不认识的必选参数（原样保留）
+     */
+    private static int placeholderKind(String name) {
+        boolean optional = name.endsWith("?");
+        String base = optional ? name.substring(0, name.length() - 1) : name;
+
+        switch (base) {
+            case "searchTerms":
+                return SEARCH_TERMS;
+            case "inputEncoding":
+            case "outputEncoding":
+                return INPUT_ENCODING;
+            case "language":
+                return LANGUAGE;
+            case "startPage":
+                return START_PAGE;
+            default:
+                return optional ? LITERAL : -1;
+        }
+    }
+
+    private static void flushLiteral(StringBuilder literal, List<Integer> kinds, List<String> literals) {
+        if (literal.length() == 0) return;
+        kinds.add(LITERAL);
+        literals.add(literal.toString());
+        literal.setLength(0);
+    }
+
+    /**
+     * 从模板的字面查询参数中识别字符集（例如 ie=gbk），识别失败时使用 UTF-8
+     */
+    private static Charset detectCharset(String template) {
+        int query = template.indexOf('?');
+        if (query < 0) return StandardCharsets.UTF_8;
+
+        for (String pair : template.substring(query + 1).split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq <= 0) continue;
+
+            String name = pair.substring(0, eq).toLowerCase(Locale.ROOT);
+            String value = pair.substring(eq + 1);
+            if (value.isEmpty() || value.indexOf('{') >= 0 || value.indexOf('%') >= 0) continue;
+
+            for (String param : CHARSET_PARAMS) {
+                if (param.equals(name)) {
+                    try {
+                        return Charset.forName(value);
+                    } catch (Exception ignored) {
+                        return StandardCharsets.UTF_8;
+                    }
+                }
+            }
+        }
+        return StandardCharsets.UTF_8;
+    }
+
+    public Charset charset() {
+        return charset;
+    }
+
+    public String expand(String query) {
+        if (query == null) query = "";
+
+        StringBuilder sb = new StringBuilder(literalLength + query.length() * 3 + 16);
+        for (int i = 0; i < kinds.length; i++) {
+            switch (kinds[i]) {
+                case LITERAL:
+                    sb.append(literals[i]);
+                    break;
+                case SEARCH_TERMS:
+                    appendEncoded(sb, query);
+                    break;
+                case INPUT_ENCODING:
+                    sb.append(charset.name());
+                    break;
+                case LANGUAGE:
+                    sb.append(Locale.getDefault().toLanguageTag());
+                    break;
+                case START_PAGE:
+                    sb.append('1');
+                    break;
+            }
+        }
+        return sb.toString();
+    }
+
+    private void appendEncoded(StringBuilder sb, String query) {
+        if (utf8) {
+            appendUtf8(sb, query);
+        } else {
+            appendWithEncoder(sb, query);
+        }
+    }
+
+    /**
+     * UTF-8 快速路径：直接按码点写出百分号编码，不经过 CharsetEncoder
+     */
+    private static void appendUtf8(StringBuilder sb, String s) {
+        int n = s.length();
+        for (int i = 0; i < n; i++) {
+            char c = s.charAt(i);
+            if (isUnreserved(c)) {
+                sb.append(c);
+            } else if (c == ' ') {
+                sb.append('+');
+            } else if (c < 0x80) {
+                appendByte(sb, c);
+            } else if (c < 0x800) {
+                appendByte(sb, 0xC0 | (c >> 6));
+                appendByte(sb, 0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, s.charAt(++i));
+                appendByte(sb, 0xF0 | (cp >> 18));
+                appendByte(sb, 0x80 | ((cp >> 12) & 0x3F));
+                appendByte(sb, 0x80 | ((cp >> 6) & 0x3F));
+                appendByte(sb, 0x80 | (cp & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                // 孤立代理项，与 URLEncoder 一致编码为 '?'
+                appendByte(sb, '?');
+            } else {
+                appendByte(sb, 0xE0 | (c >> 12));
+                appendByte(sb, 0x80 | ((c >> 6) & 0x3F));
+                appendByte(sb, 0x80 | (c & 0x3F));
+            }
+        }
+    }
+
+    private void appendWithEncoder(StringBuilder sb, String s) {
+        EncoderState state = encoderState.get();
+        int n = s.length();
+        int start = 0;
+        while (start < n) {
+            char c = s.charAt(start);
+            if (isUnreserved(c)) {
+                sb.append(c);
+                start++;
+                continue;
+            }
+            if (c == ' ') {
+                sb.append('+');
+                start++;
+                continue;
+            }
+
+            // 连续的需编码字符一次性交给编码器
+            int end = start + 1;
+            while (end < n && !isUnreserved(s.charAt(end)) && s.charAt(end) != ' ') {
+                end++;
+            }
+
+            ByteBuffer out = encode(state, CharBuffer.wrap(s, start, end), end - start);
+            for (int i = 0; i < out.limit(); i++) {
+                appendByte(sb, out.get(i));
+            }
+            start = end;
+        }
+    }
+
+    private static ByteBuffer encode(EncoderState state, CharBuffer in, int chars) {
+        int needed = (int) Math.ceil(chars * state.encoder.maxBytesPerChar());
+        if (state.buffer.capacity() < needed) {
+            state.buffer = ByteBuffer.allocate(needed);
+        }
+        ByteBuffer out = state.buffer;
+        out.clear();
+        state.encoder.reset();
+        state.encoder.encode(in, out, true);
+        state.encoder.flush(out);
+        out.flip();
+        return out;
+    }
+
+    private static boolean isUnreserved(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                || c == '.' || c == '-' || c == '*' || c == '_';
+    }
+
+    private static void appendByte(StringBuilder sb, int b) {
+        sb.append('%').append(HEX[(b >> 4) & 0xF]).append(HEX[b & 0xF]);
+    }
+}
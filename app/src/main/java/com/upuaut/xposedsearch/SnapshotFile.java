@@ -0,0 +1,351 @@
+// app/src/main/java/com/upuaut/xposedsearch/SnapshotFile.java
+package com.upuaut.xposedsearch;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 配置快照的二进制格式，同时用于 Provider 传输和 Xposed 侧本地缓存文件
+ *
+ * 布局（小端）：
+ *   头部     magic(4) version(4) hash(8) sectionCount(4) stringCount(4)
+ *   分区目录 每个分区 id(4) generation(8) flags(4) recordWidth(4) recordCount(4) recordsOffset(4)
+ *   字符串表 (stringCount + 1) 个 int 偏移 + UTF-8 数据（所有分区共用）
+ *   记录区   各分区的定长记录，字符串字段存字符串表下标（-1 表示 null）
+ *
+ * hash 覆盖 hash 字段之后的全部字节；内容不变时不重写文件，写入时先写临时文件再 rename
+ */
+final class SnapshotFile {
+
+    private static final int MAGIC = 0x50435358; // "XSCP"
+    private static final int VERSION = 2;
+    private static final int HASH_OFFSET = 8;
+    private static final int HASHED_FROM = 16;
+    private static final int HEADER_SIZE = 24;
+    private static final int SECTION_ENTRY_SIZE = 28;
+
+    private SnapshotFile() {}
+
+    /**
+     * 内容未变化时跳过写入，返回是否真正写了文件
+     */
+    static boolean writeIfChanged(File file, byte[] content) throws IOException {
+        long newHash = ByteBuffer.wrap(content).order(ByteOrder.LITTLE_ENDIAN).getLong(HASH_OFFSET);
+
+        if (file.length() >= HEADER_SIZE) {
+            try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+                byte[] head = new byte[HASHED_FROM];
+                raf.readFully(head);
+                ByteBuffer buf = ByteBuffer.wrap(head).order(ByteOrder.LITTLE_ENDIAN);
+                if (buf.getInt(0) == MAGIC && buf.getInt(4) == VERSION && buf.getLong(HASH_OFFSET) == newHash) {
+                    return false;
+                }
+            } catch (IOException ignored) {
+                // 旧文件损坏，直接覆盖
+            }
+        }
+
+        File tmp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tmp)) {
+            out.write(content);
+            out.getFD().sync();
+        }
+        if (!tmp.renameTo(file)) {
+            tmp.delete();
+            throw new IOException("rename failed: " + file.getName());
+        }
+        return true;
+    }
+
+    /**
+     * 构建快照字节；每条记录必须恰好写满所在分区的 recordWidth 字节
+     */
+    static final class Builder {
+        private final List<byte[]> strings = new ArrayList<>();
+        private final Map<String, Integer> stringIndex = new HashMap<>();
+        private int stringBytes = 0;
+
+        private final List<SectionSpec> sections = new ArrayList<>();
+        private SectionSpec current;
+        private ByteBuffer records = ByteBuffer.allocate(256).order(ByteOrder.LITTLE_ENDIAN);
+        private int recordStart = -1;
+
+        private static final class SectionSpec {
+            final int id;
+            final long generation;
+            final int flags;
+            final int recordWidth;
+            final int recordsOffset;
+            int recordCount;
+
+            SectionSpec(int id, long generation, int flags, int recordWidth, int recordsOffset) {
+                this.id = id;
+                this.generation = generation;
+                this.flags = flags;
+                this.recordWidth = recordWidth;
+                this.recordsOffset = recordsOffset;
+            }
+        }
+
+        Builder beginSection(int id, long generation, int flags, int recordWidth) {
+            if (recordWidth <= 0) throw new IllegalArgumentException("recordWidth must be positive");
+            current = new SectionSpec(id, generation, flags, recordWidth, records.position());
+            sections.add(current);
+            return this;
+        }
+
+        Builder beginRecord() {
+            if (current == null) throw new IllegalStateException("no section");
+            if (records.remaining() < current.recordWidth) {
+                int capacity = Math.max(records.capacity() * 2, records.position() + current.recordWidth);
+                ByteBuffer grown = ByteBuffer.allocate(capacity).order(ByteOrder.LITTLE_ENDIAN);
+                records.flip();
+                grown.put(records);
+                records = grown;
+            }
+            recordStart = records.position();
+            return this;
+        }
+
+        Builder putString(String value) {
+            records.putInt(indexOf(value));
+            return this;
+        }
+
+        Builder putInt(int value) {
+            records.putInt(value);
+            return this;
+        }
+
+        Builder putLong(long value) {
+            records.putLong(value);
+            return this;
+        }
+
+        Builder endRecord() {
+            int written = records.position() - recordStart;
+            if (written != current.recordWidth) {
+                throw new IllegalStateException("record width mismatch: " + written + " != " + current.recordWidth);
+            }
+            current.recordCount++;
+            recordStart = -1;
+            return this;
+        }
+
+        private int indexOf(String value) {
+            if (value == null) return -1;
+            Integer index = stringIndex.get(value);
+            if (index != null) return index;
+
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            int newIndex = strings.size();
+            strings.add(bytes);
+            stringIndex.put(value, newIndex);
+            stringBytes += bytes.length;
+            return newIndex;
+        }
+
+        byte[] build() {
+            int stringCount = strings.size();
+            int recordBytes = records.position();
+            int total = HEADER_SIZE + sections.size() * SECTION_ENTRY_SIZE
+                    + (stringCount + 1) * 4 + stringBytes + recordBytes;
+
+            ByteBuffer out = ByteBuffer.allocate(total).order(ByteOrder.LITTLE_ENDIAN);
+            out.putInt(MAGIC);
+            out.putInt(VERSION);
+            out.putLong(0L); // hash 占位
+            out.putInt(sections.size());
+            out.putInt(stringCount);
+
+            for (SectionSpec section : sections) {
+                out.putInt(section.id);
+                out.putLong(section.generation);
+                out.putInt(section.flags);
+                out.putInt(section.recordWidth);
+                out.putInt(section.recordCount);
+                out.putInt(section.recordsOffset);
+            }
+
+            int offset = 0;
+            for (byte[] bytes : strings) {
+                out.putInt(offset);
+                offset += bytes.length;
+            }
+            out.putInt(offset);
+            for (byte[] bytes : strings) {
+                out.put(bytes);
+            }
+
+            out.put(records.array(), 0, recordBytes);
+
+            byte[] content = out.array();
+            out.putLong(HASH_OFFSET, hash(ByteBuffer.wrap(content), HASHED_FROM, content.length));
+            return content;
+        }
+    }
+
+    /**
+     * 只读视图（文件通过 MappedByteBuffer 映射），字符串按需解码并缓存
+     */
+    static final class Reader {
+        private final ByteBuffer buf;
+        private final int sectionCount;
+        private final int stringOffsetsPos;
+        private final int stringDataPos;
+        private final int recordsPos;
+        private final String[] decoded;
+
+        private Reader(ByteBuffer buf) throws IOException {
+            this.buf = buf;
+            if (buf.capacity() < HEADER_SIZE || buf.getInt(0) != MAGIC || buf.getInt(4) != VERSION) {
+                throw new IOException("bad header");
+            }
+            sectionCount = buf.getInt(16);
+            int stringCount = buf.getInt(20);
+            if (sectionCount < 0 || stringCount < 0) {
+                throw new IOException("bad layout");
+            }
+
+            stringOffsetsPos = HEADER_SIZE + sectionCount * SECTION_ENTRY_SIZE;
+            stringDataPos = stringOffsetsPos + (stringCount + 1) * 4;
+            if (stringDataPos > buf.capacity()) {
+                throw new IOException("bad layout");
+            }
+            recordsPos = stringDataPos + buf.getInt(stringOffsetsPos + stringCount * 4);
+            if (recordsPos > buf.capacity()) {
+                throw new IOException("bad size");
+            }
+            if (hash(buf, HASHED_FROM, buf.capacity()) != buf.getLong(HASH_OFFSET)) {
+                throw new IOException("hash mismatch");
+            }
+            decoded = new String[stringCount];
+        }
+
+        /**
+         * 文件不存在返回 null；格式或校验不通过抛出 IOException
+         */
+        static Reader open(File file) throws IOException {
+            if (!file.exists()) return null;
+            try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+                 FileChannel channel = raf.getChannel()) {
+                // 映射在 channel 关闭后依然有效
+                MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                mapped.order(ByteOrder.LITTLE_ENDIAN);
+                return new Reader(mapped);
+            }
+        }
+
+        /**
+         * 解析内存中的快照（Provider 返回的字节）
+         */
+        static Reader wrap(byte[] content) throws IOException {
+            return new Reader(ByteBuffer.wrap(content).order(ByteOrder.LITTLE_ENDIAN));
+        }
+
+        /**
+         * 按 id 查找分区，不存在返回 null
+         */
+        Section section(int id) throws IOException {
+            for (int i = 0; i < sectionCount; i++) {
+                int entry = HEADER_SIZE + i * SECTION_ENTRY_SIZE;
+                if (buf.getInt(entry) != id) continue;
+
+                long generation = buf.getLong(entry + 4);
+                int flags = buf.getInt(entry + 12);
+                int recordWidth = buf.getInt(entry + 16);
+                int recordCount = buf.getInt(entry + 20);
+                int start = recordsPos + buf.getInt(entry + 24);
+                if (recordWidth <= 0 || recordCount < 0
+                        || start + (long) recordCount * recordWidth > buf.capacity()) {
+                    throw new IOException("bad section " + id);
+                }
+                return new Section(this, generation, flags, recordWidth, recordCount, start);
+            }
+            return null;
+        }
+
+        String string(int index) {
+            if (index < 0 || index >= decoded.length) return null;
+
+            String value = decoded[index];
+            if (value == null) {
+                int start = buf.getInt(stringOffsetsPos + index * 4);
+                int end = buf.getInt(stringOffsetsPos + (index + 1) * 4);
+                byte[] bytes = new byte[end - start];
+                ByteBuffer view = buf.duplicate();
+                view.position(stringDataPos + start);
+                view.get(bytes);
+                value = new String(bytes, StandardCharsets.UTF_8);
+                decoded[index] = value;
+            }
+            return value;
+        }
+    }
+
+    /**
+     * 单个分区的记录视图
+     */
+    static final class Section {
+        private final Reader reader;
+        private final long generation;
+        private final int flags;
+        private final int recordWidth;
+        private final int recordCount;
+        private final int start;
+
+        private Section(Reader reader, long generation, int flags, int recordWidth, int recordCount, int start) {
+            this.reader = reader;
+            this.generation = generation;
+            this.flags = flags;
+            this.recordWidth = recordWidth;
+            this.recordCount = recordCount;
+            this.start = start;
+        }
+
+        long generation() {
+            return generation;
+        }
+
+        int flags() {
+            return flags;
+        }
+
+        int recordCount() {
+            return recordCount;
+        }
+
+        int getInt(int record, int offset) {
+            return reader.buf.getInt(start + record * recordWidth + offset);
+        }
+
+        long getLong(int record, int offset) {
+            return reader.buf.getLong(start + record * recordWidth + offset);
+        }
+
+        String getString(int record, int offset) {
+            return reader.string(getInt(record, offset));
+        }
+    }
+
+    // FNV-1a 64 位
+    private static long hash(ByteBuffer data, int from, int to) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = from; i < to; i++) {
+            h ^= data.get(i) & 0xff;
+            h *= 0x100000001b3L;
+        }
+        return h;
+    }
+}
@@ -0,0 +1,170 @@
+// app/src/main/java/com/upuaut/xposedsearch/hooks/Accessors.java
+package com.upuaut.xposedsearch.hooks;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+
+import de.robv.android.xposed.XposedHelpers;
+
+/**
+ * 映射解析完成后，把反射得到的 Method / Field / Constructor 编译为 MethodHandle 访问器
+ * 热路径上只做 invokeExact，不再按名称查找方法或走 Field.get/set 的访问检查
+ */
+final class Accessors {
+
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+    private Accessors() {}
+
+    static FieldAccessor field(Field field) {
+        return field != null ? new FieldAccessor(field) : null;
+    }
+
+    /**
+     * 编译无参 String 方法；clazz 中找不到时返回 null
+     */
+    static StringGetter stringGetter(Class<?> clazz, String methodName) {
+        if (clazz == null || methodName == null) return null;
+        try {
+            Method method = XposedHelpers.findMethodExact(clazz, methodName);
+            return new StringGetter(method);
+        } catch (Throwable t) {
+            return null;
+        }
+    }
+
+    static EntityFactory entityFactory(Constructor<?> constructor) {
+        return constructor != null ? new EntityFactory(constructor) : null;
+    }
+
+    /**
+     * 字段读写；final 字段无法生成 setter 时退回 Field.set
+     */
+    static final class FieldAccessor {
+        private final Field field;
+        private final MethodHandle getter;
+        private final MethodHandle setter;
+
+        private FieldAccessor(Field field) {
+            field.setAccessible(true);
+            this.field = field;
+
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            MethodHandle g = null;
+            MethodHandle s = null;
+            try {
+                g = lookup.unreflectGetter(field).asType(GETTER_TYPE);
+            } catch (Throwable ignored) {}
+            try {
+                s = lookup.unreflectSetter(field).asType(SETTER_TYPE);
+            } catch (Throwable ignored) {}
+            this.getter = g;
+            this.setter = s;
+        }
+
+        Object get(Object target) throws Throwable {
+            if (getter != null) return (Object) getter.invokeExact(target);
+            return field.get(target);
+        }
+
+        void set(Object target, Object value) throws Throwable {
+            if (setter != null) {
+                setter.invokeExact(target, value);
+            } else {
+                field.set(target, value);
+            }
+        }
+
+        boolean is(Field other) {
+            return field.equals(other);
+        }
+
+        String getName() {
+            return field.getName();
+        }
+    }
+
+    /**
+     * 无参 String 方法；目标不是声明类的实例时退回 XposedHelpers.callMethod
+     */
+    static final class StringGetter {
+        private final Class<?> owner;
+        private final String name;
+        private final MethodHandle handle;
+
+        private StringGetter(Method method) throws IllegalAccessException {
+            method.setAccessible(true);
+            this.owner = method.getDeclaringClass();
+            this.name = method.getName();
+            this.handle = MethodHandles.lookup().unreflect(method).asType(GETTER_TYPE);
+        }
+
+        String get(Object target) {
+            if (target == null) return null;
+            try {
+                Object res = owner.isInstance(target)
+                        ? (Object) handle.invokeExact(target)
+                        : XposedHelpers.callMethod(target, name);
+                return (res instanceof String) ? (String) res : null;
+            } catch (Throwable t) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * 实体构造：无参、(long id) 或其他签名（首个 long 参数填 id，其余填默认值）
+     */
+    static final class EntityFactory {
+        private final MethodHandle handle;
+        private final Class<?>[] paramTypes;
+        private final boolean idFirst;
+
+        private EntityFactory(Constructor<?> constructor) {
+            constructor.setAccessible(true);
+            this.paramTypes = constructor.getParameterTypes();
+            this.idFirst = paramTypes.length > 0 && paramTypes[0] == long.class;
+
+            MethodHandle h = null;
+            try {
+                h = MethodHandles.lookup().unreflectConstructor(constructor)
+                        .asSpreader(Object[].class, paramTypes.length)
+                        .asType(MethodType.methodType(Object.class, Object[].class));
+            } catch (Throwable ignored) {}
+            this.handle = h;
+        }
+
+        Object create(long id) {
+            if (handle == null) return null;
+
+            Object[] args = new Object[paramTypes.length];
+            for (int i = 0; i < paramTypes.length; i++) {
+                args[i] = defaultValue(paramTypes[i]);
+            }
+            if (idFirst) args[0] = id;
+
+            try {
+                return (Object) handle.invokeExact(args);
+            } catch (Throwable t) {
+                return null;
+            }
+        }
+
+        private static Object defaultValue(Class<?> type) {
+            if (type == boolean.class) return false;
+            if (type == byte.class) return (byte) 0;
+            if (type == char.class) return (char) 0;
+            if (type == short.class) return (short) 0;
+            if (type == int.class) return 0;
+            if (type == long.class) return 0L;
+            if (type == float.class) return 0.0f;
+            if (type == double.class) return 0.0;
+            return null;
+        }
+    }
+}
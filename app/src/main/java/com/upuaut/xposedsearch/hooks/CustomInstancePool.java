@@ -0,0 +1,132 @@
+// app/src/main/java/com/upuaut/xposedsearch/hooks/CustomInstancePool.java
+package com.upuaut.xposedsearch.hooks;
+
+import java.lang.ref.SoftReference;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 自定义引擎实例池
+ * 以 (key, 配置指纹) 标识实例：名称或 URL 改变后指纹不同，旧实例不再命中并被重建
+ *
+ * 活跃实例强引用，按最近使用淘汰，数量有上限；被淘汰或对应引擎已删除的实例降级为软引用，
+ * 引擎恢复且配置未变时可直接复用，内存紧张时由 GC 回收（连同其持有的 Context 与数据模型）
+ */
+final class CustomInstancePool {
+
+    private static final int MAX_LIVE = 32;
+    private static final int MAX_RETIRED = 32;
+
+    private static final long UNKNOWN_GENERATION = Long.MIN_VALUE;
+
+    private static final class Entry {
+        final String fingerprint;
+        final Object instance;
+
+        Entry(String fingerprint, Object instance) {
+            this.fingerprint = fingerprint;
+            this.instance = instance;
+        }
+    }
+
+    private static final class RetiredEntry {
+        final String fingerprint;
+        final SoftReference<Object> instance;
+
+        RetiredEntry(Entry entry) {
+            this.fingerprint = entry.fingerprint;
+            this.instance = new SoftReference<>(entry.instance);
+        }
+    }
+
+    // 只在持有 this 锁时访问；锁内只做 Map 操作，实例创建在锁外进行
+    private final LinkedHashMap<String, Entry> live = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<String, RetiredEntry> retired = new LinkedHashMap<>(16, 0.75f, true);
+
+    private volatile long prunedGeneration = UNKNOWN_GENERATION;
+
+    static String fingerprint(String name, String searchUrl) {
+        return (name != null ? name : "") + '\n' + (searchUrl != null ? searchUrl : "");
+    }
+
+    /**
+     * 查找指纹匹配的实例；活跃实例不匹配时返回 null，软引用中的匹配实例会被重新激活
+     */
+    synchronized Object get(String key, String fingerprint) {
+        Entry entry = live.get(key);
+        if (entry != null) {
+            return entry.fingerprint.equals(fingerprint) ? entry.instance : null;
+        }
+
+        RetiredEntry retiredEntry = retired.remove(key);
+        if (retiredEntry != null && retiredEntry.fingerprint.equals(fingerprint)) {
+            Object instance = retiredEntry.instance.get();
+            if (instance != null) {
+                putLive(key, new Entry(fingerprint, instance));
+                return instance;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 放入新建的实例；并发创建同一指纹时返回先放入的实例
+     */
+    synchronized Object put(String key, String fingerprint, Object instance) {
+        Entry existing = live.get(key);
+        if (existing != null && existing.fingerprint.equals(fingerprint)) {
+            return existing.instance;
+        }
+        retired.remove(key);
+        putLive(key, new Entry(fingerprint, instance));
+        return instance;
+    }
+
+    /**
+     * 配置代数变化时调用：不在 liveKeys 中的实例降级为软引用
+     */
+    void prune(long generation, Set<String> liveKeys) {
+        if (prunedGeneration == generation) return;
+
+        synchronized (this) {
+            if (prunedGeneration == generation) return;
+
+            Iterator<Map.Entry<String, Entry>> it = live.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<String, Entry> e = it.next();
+                if (!liveKeys.contains(e.getKey())) {
+                    retire(e.getKey(), e.getValue());
+                    it.remove();
+                }
+            }
+            prunedGeneration = generation;
+        }
+    }
+
+    synchronized void clear() {
+        live.clear();
+        retired.clear();
+        prunedGeneration = UNKNOWN_GENERATION;
+    }
+
+    private void putLive(String key, Entry entry) {
+        live.put(key, entry);
+        if (live.size() > MAX_LIVE) {
+            Iterator<Map.Entry<String, Entry>> it = live.entrySet().iterator();
+            Map.Entry<String, Entry> eldest = it.next();
+            retire(eldest.getKey(), eldest.getValue());
+            it.remove();
+        }
+    }
+
+    private void retire(String key, Entry entry) {
+        retired.put(key, new RetiredEntry(entry));
+        if (retired.size() > MAX_RETIRED) {
+            Iterator<String> it = retired.keySet().iterator();
+            it.next();
+            it.remove();
+        }
+    }
+}
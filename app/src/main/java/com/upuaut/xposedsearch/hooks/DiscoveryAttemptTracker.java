@@ -0,0 +1,123 @@
+// app/src/main/java/com/upuaut/xposedsearch/hooks/DiscoveryAttemptTracker.java
+package com.upuaut.xposedsearch.hooks;
+
+import android.os.SystemClock;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import de.robv.android.xposed.XposedBridge;
+
+/**
+ * 记录按类进行的反射探测（映射解析的兜底扫描）的失败次数，失败后按指数退避
+ * 退避期间的调用只做一次计数检查，不再重复 getDeclaredFields / 逐字段读取；
+ * 同时缓存每个类中 List 类型字段的访问器，重试时不再重新扫描字段
+ * 每次失败在 Xposed 日志中记录失败次数、原因和下次重试时间；
+ * failureSummary() 汇总各类的失败次数与最近原因，随诊断上报发送到模块端，便于诊断不支持的浏览器版本
+ */
+final class DiscoveryAttemptTracker {
+
+    private static final String TAG = "XposedSearch";
+
+    private static final long BASE_BACKOFF_MS = 1_000L;
+    private static final long MAX_BACKOFF_MS = 10 * 60_000L;
+
+    private static final class State {
+        int failures = 0;
+        long nextAttemptAt = 0L;
+        String lastReason = null;
+        Accessors.FieldAccessor[] listFields = null;
+    }
+
+    private final String name;
+    private final ConcurrentHashMap<Class<?>, State> states = new ConcurrentHashMap<>();
+
+    DiscoveryAttemptTracker(String name) {
+        this.name = name;
+    }
+
+    /**
+     * 当前是否允许对该类进行探测；退避期间返回 false
+     */
+    boolean shouldAttempt(Class<?> clazz) {
+        State state = states.get(clazz);
+        if (state == null) return true;
+        synchronized (state) {
+            return SystemClock.uptimeMillis() >= state.nextAttemptAt;
+        }
+    }
+
+    void recordSuccess(Class<?> clazz) {
+        State state = states.get(clazz);
+        if (state == null) return;
+        synchronized (state) {
+            if (state.failures > 0) {
+                XposedBridge.log("[" + TAG + "] " + name + ": " + clazz.getName()
+                        + " resolved after " + state.failures + " failed attempts");
+            }
+            state.failures = 0;
+            state.nextAttemptAt = 0L;
+            state.lastReason = null;
+        }
+    }
+
+    void recordFailure(Class<?> clazz, String reason) {
+        State state = stateFor(clazz);
+        synchronized (state) {
+            state.failures++;
+            long backoff = BASE_BACKOFF_MS << Math.min(state.failures - 1, 20);
+            if (backoff > MAX_BACKOFF_MS || backoff <= 0) backoff = MAX_BACKOFF_MS;
+            state.nextAttemptAt = SystemClock.uptimeMillis() + backoff;
+            state.lastReason = reason;
+
+            XposedBridge.log("[" + TAG + "] " + name + ": " + clazz.getName() + " attempt "
+                    + state.failures + " failed (" + reason + "), next retry in " + backoff + "ms");
+        }
+    }
+
+    /**
+     * 当前仍处于失败状态的类：{探测名, 类名, 失败次数, 最近一次失败原因}，按类名排序
+     */
+    List<String[]> failureSummary() {
+        List<String[]> summary = new ArrayList<>();
+        for (Map.Entry<Class<?>, State> entry : states.entrySet()) {
+            State state = entry.getValue();
+            synchronized (state) {
+                if (state.failures == 0) continue;
+                summary.add(new String[]{name, entry.getKey().getName(),
+                        String.valueOf(state.failures), state.lastReason});
+            }
+        }
+        Collections.sort(summary, (a, b) -> a[1].compareTo(b[1]));
+        return summary;
+    }
+
+    /**
+     * 返回类中（不含父类）所有 List 类型字段的访问器，每个类只扫描一次
+     */
+    Accessors.FieldAccessor[] listFields(Class<?> clazz) {
+        State state = stateFor(clazz);
+        synchronized (state) {
+            if (state.listFields == null) {
+                List<Accessors.FieldAccessor> fields = new ArrayList<>();
+                for (Field field : clazz.getDeclaredFields()) {
+                    if (List.class.isAssignableFrom(field.getType())) {
+                        try {
+                            fields.add(Accessors.field(field));
+                        } catch (Throwable ignored) {}
+                    }
+                }
+                state.listFields = fields.toArray(new Accessors.FieldAccessor[0]);
+            }
+            return state.listFields;
+        }
+    }
+
+    private State stateFor(Class<?> clazz) {
+        return states.computeIfAbsent(clazz, c -> new State());
+    }
+}
@@ -0,0 +1,155 @@
+// app/src/main/java/com/upuaut/xposedsearch/hooks/DiscoveryReporter.java
+package com.upuaut.xposedsearch.hooks;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import com.upuaut.xposedsearch.ConfigRefresher;
+import com.upuaut.xposedsearch.ProviderCircuitBreaker;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import de.robv.android.xposed.XposedBridge;
+
+/**
+ * 异步上报发现结果：hook 只提交快照就返回，后台线程负责投递
+ * 队列只保留最新一份快照，两次投递之间的多次提交合并为一次
+ *
+ * 每份快照带有规范化内容的哈希，与上次投递成功（已确认）的哈希相同则不再上报；
+ * 已确认的哈希保存在浏览器进程的 SharedPreferences 中，重启后仍然有效
+ *
+ * 投递失败时快照留在队列中（除非已有更新的快照），由熔断器按指数退避在后台线程重试，
+ * 不设次数上限：模块进程启动期间暂时不可用不会让本次进程内的发现结果丢失
+ */
+final class DiscoveryReporter<T> {
+
+    private static final String TAG = "XposedSearch";
+    private static final String PREF_NAME = "xposed_discovery";
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    interface Delivery<T> {
+        void deliver(Context context, T snapshot) throws Throwable;
+    }
+
+    private static final class Pending<T> {
+        final Context context;
+        final T snapshot;
+        final long hash;
+        final boolean force;
+
+        Pending(Context context, T snapshot, long hash, boolean force) {
+            this.context = context;
+            this.snapshot = snapshot;
+            this.hash = hash;
+            this.force = force;
+        }
+    }
+
+    private final String name;
+    private final Delivery<T> delivery;
+    private final AtomicReference<Pending<T>> pending = new AtomicReference<>();
+    private final ConfigRefresher.CoalescingTask task;
+    private final ProviderCircuitBreaker breaker;
+
+    // 已确认的哈希；未从磁盘加载前 ackedLoaded 为 false
+    private volatile long ackedHash = 0L;
+    private volatile boolean ackedLoaded = false;
+
+    DiscoveryReporter(String name, Delivery<T> delivery) {
+        this.name = name;
+        this.delivery = delivery;
+        this.task = new ConfigRefresher.CoalescingTask(this::drain);
+        this.breaker = new ProviderCircuitBreaker("DiscoveryReporter(" + name + ")", this::retry);
+    }
+
+    /**
+     * 提交快照；force 为 true 时忽略已确认的哈希（例如模块端配置被清空后需要重新上报）
+     */
+    void submit(Context context, T snapshot, long hash, boolean force) {
+        if (context == null || snapshot == null) return;
+        if (!force && ackedLoaded && ackedHash == hash) return;
+
+        pending.set(new Pending<>(context, snapshot, hash, force));
+        // 熔断期间只更新队列，由重试取走最新快照
+        if (breaker.allowRequest()) {
+            task.request();
+        }
+    }
+
+    private void drain() {
+        if (!breaker.allowRequest()) return;
+        if (deliverPending()) {
+            breaker.recordSuccess();
+        } else {
+            breaker.recordFailure();
+        }
+    }
+
+    /**
+     * 熔断器的退避重试（后台线程）；成功后若期间又有新快照提交，安排一次正常投递
+     */
+    private boolean retry() {
+        if (!deliverPending()) return false;
+        if (pending.get() != null) {
+            task.request();
+        }
+        return true;
+    }
+
+    /**
+     * 投递队列中的快照；队列为空或与已确认内容相同视为成功
+     * 失败时放回队列，期间已有更新的快照则以新快照为准
+     */
+    private boolean deliverPending() {
+        Pending<T> next = pending.getAndSet(null);
+        if (next == null) return true;
+
+        SharedPreferences prefs = prefs(next.context);
+        if (!ackedLoaded) {
+            ackedHash = prefs.getLong(name, 0L);
+            ackedLoaded = true;
+        }
+        if (!next.force && ackedHash == next.hash) return true;
+
+        try {
+            delivery.deliver(next.context, next.snapshot);
+            ackedHash = next.hash;
+            prefs.edit().putLong(name, next.hash).apply();
+            return true;
+        } catch (Throwable t) {
+            pending.compareAndSet(null, next);
+            XposedBridge.log("[" + TAG + "] DiscoveryReporter: " + name + " delivery failed: " + t.getMessage());
+            return false;
+        }
+    }
+
+    private static SharedPreferences prefs(Context context) {
+        return context.getSharedPreferences(PREF_NAME, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * 按顺序对条目做 FNV-1a 64 哈希；字段之间与条目之间都加分隔，null 与空串区分开
+     * 调用方负责规范化（例如对与顺序无关的集合先排序）
+     */
+    static long hash(List<String[]> entries) {
+        long h = FNV_OFFSET;
+        for (String[] entry : entries) {
+            for (String field : entry) {
+                if (field == null) {
+                    h = (h ^ 0xFF) * FNV_PRIME;
+                } else {
+                    for (byte b : field.getBytes(StandardCharsets.UTF_8)) {
+                        h = (h ^ (b & 0xFF)) * FNV_PRIME;
+                    }
+                }
+                h = (h ^ 0x1F) * FNV_PRIME;
+            }
+            h = (h ^ 0x1E) * FNV_PRIME;
+        }
+        return h;
+    }
+}
@@ -12,7 +12,14 @@ import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import de.robv.android.xposed.XC_MethodHook;
 import de.robv.android.xposed.XposedBridge;
@@ -20,6 +27,7 @@ import de.robv.android.xposed.XposedHelpers;
 import de.robv.android.xposed.callbacks.XC_LoadPackage;
 
 import com.upuaut.xposedsearch.HotSitePrefsCache;
+import com.upuaut.xposedsearch.ProviderConnection;
 
 public class HotSitesHook {
 
@@ -27,7 +35,30 @@ public class HotSitesHook {
     private static final String PROVIDER_HOTSITES_DISCOVER_URI = "content://com.upuaut.xposedsearch.provider/hotsites_discover";
 
     private XC_LoadPackage.LoadPackageParam lpparam;
-    private Context mContext;
+    private volatile Context mContext;
+
+    // 持久化的发现结果（按浏览器版本 + 签名失效），下次启动校验后直接 hook，跳过发现流程
+    private static final String MAPPING_NAMESPACE = "hot_sites";
+    private static final String MAP_MODE = "mode";
+    private static final String MODE_CONTAINER = "container";
+    private static final String MODE_ADAPTER = "adapter";
+    private static final String MAP_ADAPTER_CLASS = "adapterClass";
+    private static final String MAP_ENTITY_CLASS = "entityClass";
+    private static final String MAP_NAME_FIELD = "nameField";
+    private static final String MAP_URL_FIELD = "urlField";
+    private static final String MAP_ICON_FIELD = "iconField";
+    private static final String MAP_DATA_FIELD = "dataField";
+    private static final String MAP_SETTER = "setter";
+    private static final String MAP_SETTER_PARAM = "setterParam";
+    private static final String MAP_CONSTRUCTOR = "constructor";
+
+    // 直接 hook 失败后，发现流程推迟到拿到 Context（需要读取持久化记录）时执行
+    private boolean discoveryDeferred = false;
+
+    // 发现流程最终 hook 的方法与实体构造函数，用于持久化
+    private String hookedSetterName = null;
+    private Class<?> hookedSetterParam = null;
+    private Constructor<?> entityConstructor = null;
 
     // 未混淆的类路径（关键入口点）
     private static final String SIMPLE_HOTS_CONTAINER_CLASS =
@@ -44,17 +75,105 @@ public class HotSitesHook {
     private Class<?> entityClass = null;
     private Class<?> viewModelClass = null;
 
-    // Entity field cache
-    private Field entityNameField = null;
-    private Field entityUrlField = null;
-    private Field entityIconField = null;
-    private Constructor<?> entityConstructor = null;
+    // Entity field cache（解析后编译为 MethodHandle 访问器）
+    private Accessors.FieldAccessor entityNameField = null;
+    private Accessors.FieldAccessor entityUrlField = null;
+    private Accessors.FieldAccessor entityIconField = null;
+    private Accessors.EntityFactory entityFactory = null;
 
     // Adapter field cache
-    private Field adapterDataField = null;
+    private Accessors.FieldAccessor adapterDataField = null;
 
     private boolean classesResolved = false;
-    private boolean hasReportedSites = false;
+    // 发现结果异步上报，内容与上次已确认的一致时不产生 IPC
+    private final DiscoveryReporter<List<String[]>> siteReporter =
+            new DiscoveryReporter<>("hotsites", HotSitesHook::deliverDiscoveredSites);
+
+    // 按配置代数缓存的替换实体，配置未变时重复渲染不再创建实体
+    private volatile SiteEntities siteEntities = null;
+
+    private static final class SiteEntities {
+        final long generation;
+        final Class<?> entityClass;
+        final String layout;
+        final Accessors.EntityFactory factory;
+        final List<HotSitePrefsCache.SiteConfig> configs;
+        // 与 configs 一一对应；创建失败或被改动的位置会被重建
+        final Object[] entities;
+
+        SiteEntities(long generation, Class<?> entityClass, String layout,
+                     Accessors.EntityFactory factory, List<HotSitePrefsCache.SiteConfig> configs) {
+            this.generation = generation;
+            this.entityClass = entityClass;
+            this.layout = layout;
+            this.factory = factory;
+            this.configs = configs;
+            this.entities = new Object[configs.size()];
+        }
+
+        boolean matches(long generation, Class<?> entityClass, String layout) {
+            return this.generation == generation && this.entityClass == entityClass && this.layout.equals(layout);
+        }
+    }
+
+    // 全局 setAdapter 兜底 hook：已判定不是热门网站适配器的类不再检查
+    // “可能是”只说明列表元素带有 URL（资讯、书签、历史等适配器同样满足），因此每个候选类都 hook，
+    // 直到某个候选被强证据确认（类名匹配，或元素类型就是已发现的实体类）才移除全局 hook 和其余候选；
+    // 确认前候选的数据既不替换也不上报
+    private static final int ADAPTER_REJECTED = 0;
+    private static final int ADAPTER_LIKELY = 1;
+    private static final int ADAPTER_UNKNOWN = 2;
+    private final Set<Class<?>> rejectedAdapterClasses = ConcurrentHashMap.newKeySet();
+    private final Map<Class<?>, AdapterSetter> candidateAdapters = new ConcurrentHashMap<>();
+    private volatile Class<?> confirmedAdapterClass = null;
+    // 从持久化记录恢复的适配器在首次有数据时按确认候选的同一强证据验证，不满足时清除记录并重新安装兜底 hook
+    private volatile boolean restoredAdapterUnverified = false;
+    private volatile XC_MethodHook.Unhook setAdapterUnhook = null;
+
+    // 候选适配器上已 hook 的数据设置方法；paramType 为 null 表示 notifyDataSetChanged
+    private static final class AdapterSetter {
+        final String methodName;
+        final Class<?> paramType;
+        final XC_MethodHook.Unhook unhook;
+
+        AdapterSetter(String methodName, Class<?> paramType, XC_MethodHook.Unhook unhook) {
+            this.methodName = methodName;
+            this.paramType = paramType;
+            this.unhook = unhook;
+        }
+    }
+
+    // 兜底路径下按适配器类缓存的字段布局（数据字段、实体字段分类、构造函数）
+    private final Map<Class<?>, AdapterLayout> adapterLayouts = new ConcurrentHashMap<>();
+
+    private static final class AdapterLayout {
+        final Accessors.FieldAccessor listField;
+        final Class<?> entityClass;
+        final Accessors.FieldAccessor nameField;
+        final Accessors.FieldAccessor urlField;
+        final Accessors.FieldAccessor iconField;
+        final Accessors.EntityFactory factory;
+
+        AdapterLayout(Accessors.FieldAccessor listField, Class<?> entityClass,
+                      Accessors.FieldAccessor nameField, Accessors.FieldAccessor urlField,
+                      Accessors.FieldAccessor iconField, Accessors.EntityFactory factory) {
+            this.listField = listField;
+            this.entityClass = entityClass;
+            this.nameField = nameField;
+            this.urlField = urlField;
+            this.iconField = iconField;
+            this.factory = factory;
+        }
+
+        @SuppressWarnings("unchecked")
+        List<Object> dataList(Object adapter) throws Throwable {
+            Object value = listField.get(adapter);
+            return value instanceof List ? (List<Object>) value : null;
+        }
+    }
+
+    // 我们创建并注入的实体，列表中出现这些实体时说明已被替换过，不能当作浏览器默认数据上报
+    private final WeakIdentityMap<Object, Boolean> injectedSites = new WeakIdentityMap<>();
     private boolean isProcessing = false;
 
     public HotSitesHook(XC_LoadPackage.LoadPackageParam lpparam) {
@@ -63,6 +182,10 @@ public class HotSitesHook {
 
     public void setAppContext(Context context) {
         this.mContext = context;
+        if (context != null && discoveryDeferred) {
+            discoveryDeferred = false;
+            runDiscovery(context);
+        }
     }
 
     public void hook() {
@@ -74,17 +197,165 @@ public class HotSitesHook {
 
         XposedBridge.log("[" + TAG + "] HotSitesHook: Direct hook failed, trying dynamic discovery");
 
-        // 2. Try dynamic discovery via SimpleHotsContainer
+        // 热门网站在首页渲染时才出现，等到 Application.onCreate 拿到 Context 再发现不会错过
+        Context context = mContext;
+        if (context != null) {
+            runDiscovery(context);
+        } else {
+            discoveryDeferred = true;
+        }
+    }
+
+    private void runDiscovery(Context context) {
+        // 2. Try persisted mappings from a previous launch
+        if (restoreMappings(context)) {
+            return;
+        }
+
+        // 3. Try dynamic discovery via SimpleHotsContainer
         if (tryDynamicDiscoveryViaContainer()) {
             XposedBridge.log("[" + TAG + "] HotSitesHook: Dynamic discovery successful");
+            persistContainerMappings(context);
             return;
         }
 
-        // 3. Fallback to RecyclerView hook
+        // 4. Fallback to RecyclerView hook
         XposedBridge.log("[" + TAG + "] HotSitesHook: Falling back to RecyclerView hook");
         hookRecyclerViewFallback();
     }
 
+    /**
+     * 校验并应用上次启动保存的发现结果：只做按名称的类、字段、方法查找，不遍历候选
+     * 任一项失效时清除记录，回退到完整的发现流程
+     */
+    private boolean restoreMappings(Context context) {
+        Map<String, String> stored = MappingStore.load(context, MAPPING_NAMESPACE);
+        if (stored == null) return false;
+
+        try {
+            ClassLoader cl = lpparam.classLoader;
+            Class<?> adapter = XposedHelpers.findClass(stored.get(MAP_ADAPTER_CLASS), cl);
+            String setter = stored.get(MAP_SETTER);
+            Class<?> setterParam = stored.get(MAP_SETTER_PARAM) != null
+                    ? typeByName(stored.get(MAP_SETTER_PARAM)) : null;
+            if (setter == null) throw new IllegalStateException("missing setter");
+
+            if (MODE_ADAPTER.equals(stored.get(MAP_MODE))) {
+                XC_MethodHook.Unhook unhook = hookDynamicSetter(adapter, setter, setterParam);
+                candidateAdapters.put(adapter, new AdapterSetter(setter, setterParam, unhook));
+                confirmedAdapterClass = adapter;
+                restoredAdapterUnverified = true;
+                XposedBridge.log("[" + TAG + "] HotSitesHook: Restored adapter hook " + adapter.getName() + "." + setter);
+                return true;
+            }
+
+            Class<?> entity = XposedHelpers.findClass(stored.get(MAP_ENTITY_CLASS), cl);
+            Field urlField = stringField(entity, stored.get(MAP_URL_FIELD));
+            if (urlField == null) throw new IllegalStateException("missing url field");
+            Field nameField = stringField(entity, stored.get(MAP_NAME_FIELD));
+            Field iconField = stringField(entity, stored.get(MAP_ICON_FIELD));
+
+            Field dataField = adapter.getDeclaredField(stored.get(MAP_DATA_FIELD));
+            if (!List.class.isAssignableFrom(dataField.getType())) {
+                throw new IllegalStateException("data field is not a List");
+            }
+
+            Constructor<?> constructor = constructorBySignature(entity, stored.get(MAP_CONSTRUCTOR));
+
+            hookContainerSetter(adapter, setter, setterParam);
+
+            adapterClass = adapter;
+            entityClass = entity;
+            dataContainerClass = setterParam;
+            entityNameField = Accessors.field(nameField);
+            entityUrlField = Accessors.field(urlField);
+            entityIconField = Accessors.field(iconField);
+            adapterDataField = Accessors.field(dataField);
+            entityConstructor = constructor;
+            entityFactory = Accessors.entityFactory(constructor);
+            classesResolved = true;
+
+            XposedBridge.log("[" + TAG + "] HotSitesHook: Restored mappings, hooked " + adapter.getName() + "." + setter);
+            return true;
+        } catch (Throwable t) {
+            XposedBridge.log("[" + TAG + "] HotSitesHook: Stored mappings invalid, rediscovering: " + t.getMessage());
+            MappingStore.clear(context, MAPPING_NAMESPACE);
+            return false;
+        }
+    }
+
+    private void persistContainerMappings(Context context) {
+        if (adapterClass == null || entityClass == null || entityUrlField == null
+                || adapterDataField == null || hookedSetterName == null) return;
+
+        Map<String, String> values = new HashMap<>();
+        values.put(MAP_MODE, MODE_CONTAINER);
+        values.put(MAP_ADAPTER_CLASS, adapterClass.getName());
+        values.put(MAP_ENTITY_CLASS, entityClass.getName());
+        values.put(MAP_URL_FIELD, entityUrlField.getName());
+        values.put(MAP_DATA_FIELD, adapterDataField.getName());
+        values.put(MAP_SETTER, hookedSetterName);
+        if (hookedSetterParam != null) values.put(MAP_SETTER_PARAM, hookedSetterParam.getName());
+        if (entityNameField != null) values.put(MAP_NAME_FIELD, entityNameField.getName());
+        if (entityIconField != null) values.put(MAP_ICON_FIELD, entityIconField.getName());
+        if (entityConstructor != null) values.put(MAP_CONSTRUCTOR, signatureOf(entityConstructor));
+        MappingStore.save(context, MAPPING_NAMESPACE, values);
+    }
+
+    private void persistAdapterMappings(Class<?> adapter, String setter, Class<?> setterParam) {
+        Context context = getContext();
+        if (context == null) return;
+
+        Map<String, String> values = new HashMap<>();
+        values.put(MAP_MODE, MODE_ADAPTER);
+        values.put(MAP_ADAPTER_CLASS, adapter.getName());
+        values.put(MAP_SETTER, setter);
+        if (setterParam != null) values.put(MAP_SETTER_PARAM, setterParam.getName());
+        MappingStore.save(context, MAPPING_NAMESPACE, values);
+    }
+
+    private static Field stringField(Class<?> cls, String name) throws NoSuchFieldException {
+        if (name == null) return null;
+        Field field = cls.getDeclaredField(name);
+        if (field.getType() != String.class) throw new NoSuchFieldException(name + " is not a String");
+        return field;
+    }
+
+    private Constructor<?> constructorBySignature(Class<?> cls, String signature) throws NoSuchMethodException {
+        if (signature == null) return null;
+        if (signature.isEmpty()) return cls.getDeclaredConstructor();
+
+        String[] names = signature.split(",");
+        Class<?>[] types = new Class<?>[names.length];
+        for (int i = 0; i < names.length; i++) {
+            types[i] = typeByName(names[i]);
+        }
+        return cls.getDeclaredConstructor(types);
+    }
+
+    private static String signatureOf(Constructor<?> constructor) {
+        StringBuilder sb = new StringBuilder();
+        for (Class<?> type : constructor.getParameterTypes()) {
+            if (sb.length() > 0) sb.append(',');
+            sb.append(type.getName());
+        }
+        return sb.toString();
+    }
+
+    private Class<?> typeByName(String name) {
+        switch (name) {
+            case "boolean": return boolean.class;
+            case "byte": return byte.class;
+            case "char": return char.class;
+            case "short": return short.class;
+            case "int": return int.class;
+            case "long": return long.class;
+            case "float": return float.class;
+            case "double": return double.class;
+            default: return XposedHelpers.findClass(name, lpparam.classLoader);
+        }
+    }
+
     /**
      * 通过未混淆的 SimpleHotsContainer 动态发现混淆后的类
      */
@@ -288,8 +559,7 @@ public class HotSitesHook {
                         Class<?> elementClass = (Class<?>) typeArgs[0];
                         // 验证：Entity 应该有 String 字段（name, url）
                         if (hasStringFields(elementClass)) {
-                            adapterDataField = field;
-                            adapterDataField.setAccessible(true);
+                            adapterDataField = Accessors.field(field);
                             return elementClass;
                         }
                     }
@@ -355,8 +625,7 @@ public class HotSitesHook {
             try {
                 Field f = entityClass.getDeclaredField(name);
                 if (f.getType() == String.class) {
-                    entityNameField = f;
-                    entityNameField.setAccessible(true);
+                    entityNameField = Accessors.field(f);
                     break;
                 }
             } catch (NoSuchFieldException ignored) {}
@@ -365,9 +634,8 @@ public class HotSitesHook {
         for (String name : urlFieldCandidates) {
             try {
                 Field f = entityClass.getDeclaredField(name);
-                if (f.getType() == String.class && f != entityNameField) {
-                    entityUrlField = f;
-                    entityUrlField.setAccessible(true);
+                if (f.getType() == String.class && !isSameField(entityNameField, f)) {
+                    entityUrlField = Accessors.field(f);
                     break;
                 }
             } catch (NoSuchFieldException ignored) {}
@@ -376,31 +644,16 @@ public class HotSitesHook {
         for (String name : iconFieldCandidates) {
             try {
                 Field f = entityClass.getDeclaredField(name);
-                if (f.getType() == String.class && f != entityNameField && f != entityUrlField) {
-                    entityIconField = f;
-                    entityIconField.setAccessible(true);
+                if (f.getType() == String.class && !isSameField(entityNameField, f) && !isSameField(entityUrlField, f)) {
+                    entityIconField = Accessors.field(f);
                     break;
                 }
             } catch (NoSuchFieldException ignored) {}
         }
 
         // 尝试找构造函数
-        try {
-            entityConstructor = entityClass.getConstructor(long.class);
-        } catch (NoSuchMethodException e) {
-            try {
-                entityConstructor = entityClass.getDeclaredConstructor();
-            } catch (NoSuchMethodException e2) {
-                Constructor<?>[] constructors = entityClass.getDeclaredConstructors();
-                if (constructors.length > 0) {
-                    entityConstructor = constructors[0];
-                }
-            }
-        }
-
-        if (entityConstructor != null) {
-            entityConstructor.setAccessible(true);
-        }
+        entityConstructor = findSuitableConstructor(entityClass);
+        entityFactory = Accessors.entityFactory(entityConstructor);
 
         XposedBridge.log("[" + TAG + "] HotSitesHook: Entity fields resolved - name=" +
                 (entityNameField != null ? entityNameField.getName() : "null") +
@@ -423,8 +676,7 @@ public class HotSitesHook {
         // 查找 List 类型的字段
         for (Field field : adapterClass.getDeclaredFields()) {
             if (List.class.isAssignableFrom(field.getType())) {
-                adapterDataField = field;
-                adapterDataField.setAccessible(true);
+                adapterDataField = Accessors.field(field);
                 XposedBridge.log("[" + TAG + "] HotSitesHook: Found adapter data field: " + field.getName());
                 return true;
             }
@@ -462,16 +714,7 @@ public class HotSitesHook {
             if (hasListGetter) {
                 final String methodName = method.getName();
                 try {
-                    XposedHelpers.findAndHookMethod(adapterClass, methodName, paramType,
-                            new XC_MethodHook() {
-                                @Override
-                                protected void afterHookedMethod(MethodHookParam param) throws Throwable {
-                                    XposedBridge.log("[" + TAG + "] HotSitesHook: " + methodName + "() called");
-                                    processAdapter(param.thisObject);
-                                }
-                            });
-                    XposedBridge.log("[" + TAG + "] HotSitesHook: Hooked " +
-                            adapterClass.getName() + "." + methodName + "(" + paramType.getName() + ")");
+                    hookContainerSetter(adapterClass, methodName, paramType);
                     hooked = true;
                     break;
                 } catch (Throwable t) {
@@ -483,14 +726,7 @@ public class HotSitesHook {
         // 备选：hook notifyDataSetChanged
         if (!hooked) {
             try {
-                XposedHelpers.findAndHookMethod(adapterClass, "notifyDataSetChanged",
-                        new XC_MethodHook() {
-                            @Override
-                            protected void beforeHookedMethod(MethodHookParam param) throws Throwable {
-                                processAdapter(param.thisObject);
-                            }
-                        });
-                XposedBridge.log("[" + TAG + "] HotSitesHook: Hooked notifyDataSetChanged (fallback)");
+                hookContainerSetter(adapterClass, "notifyDataSetChanged", null);
                 hooked = true;
             } catch (Throwable t) {
                 XposedBridge.log("[" + TAG + "] HotSitesHook: Failed to hook notifyDataSetChanged: " + t.getMessage());
@@ -500,6 +736,57 @@ public class HotSitesHook {
         return hooked;
     }
 
+    /**
+     * hook 已解析字段路径的数据设置方法；paramType 为 null 表示 notifyDataSetChanged（调用前处理）
+     */
+    private void hookContainerSetter(Class<?> adapter, String methodName, Class<?> paramType) {
+        if (paramType != null) {
+            XposedHelpers.findAndHookMethod(adapter, methodName, paramType, new XC_MethodHook() {
+                @Override
+                protected void afterHookedMethod(MethodHookParam param) throws Throwable {
+                    XposedBridge.log("[" + TAG + "] HotSitesHook: " + methodName + "() called");
+                    processAdapter(param.thisObject);
+                }
+            });
+        } else {
+            XposedHelpers.findAndHookMethod(adapter, methodName, new XC_MethodHook() {
+                @Override
+                protected void beforeHookedMethod(MethodHookParam param) throws Throwable {
+                    processAdapter(param.thisObject);
+                }
+            });
+        }
+        hookedSetterName = methodName;
+        hookedSetterParam = paramType;
+        XposedBridge.log("[" + TAG + "] HotSitesHook: Hooked " + adapter.getName() + "." + methodName
+                + "(" + (paramType != null ? paramType.getName() : "") + ")");
+    }
+
+    /**
+     * hook 兜底路径（运行时动态解析字段）的数据设置方法；paramType 为 null 表示 notifyDataSetChanged
+     */
+    private XC_MethodHook.Unhook hookDynamicSetter(Class<?> adapter, String methodName, Class<?> paramType) {
+        XC_MethodHook.Unhook unhook;
+        if (paramType != null) {
+            unhook = XposedHelpers.findAndHookMethod(adapter, methodName, paramType, new XC_MethodHook() {
+                @Override
+                protected void afterHookedMethod(MethodHookParam param) throws Throwable {
+                    XposedBridge.log("[" + TAG + "] HotSitesHook: " + methodName + "() called (fallback)");
+                    processAdapterDynamic(param.thisObject);
+                }
+            });
+        } else {
+            unhook = XposedHelpers.findAndHookMethod(adapter, methodName, new XC_MethodHook() {
+                @Override
+                protected void beforeHookedMethod(MethodHookParam param) throws Throwable {
+                    processAdapterDynamic(param.thisObject);
+                }
+            });
+        }
+        XposedBridge.log("[" + TAG + "] HotSitesHook: Hooked " + adapter.getName() + "." + methodName);
+        return unhook;
+    }
+
     private boolean tryDirectHook() {
         try {
             adapterClass = XposedHelpers.findClass(ADAPTER_CLASS, lpparam.classLoader);
@@ -509,30 +796,23 @@ public class HotSitesHook {
             XposedBridge.log("[" + TAG + "] HotSitesHook: Found classes - adapter: " + ADAPTER_CLASS +
                     ", container: " + DATA_CONTAINER_CLASS + ", entity: " + ENTITY_CLASS);
 
-            entityNameField = entityClass.getDeclaredField("e");
-            entityNameField.setAccessible(true);
-
-            entityUrlField = entityClass.getDeclaredField("f");
-            entityUrlField.setAccessible(true);
+            entityNameField = Accessors.field(entityClass.getDeclaredField("e"));
+            entityUrlField = Accessors.field(entityClass.getDeclaredField("f"));
 
             try {
-                entityIconField = entityClass.getDeclaredField("h");
-                entityIconField.setAccessible(true);
+                entityIconField = Accessors.field(entityClass.getDeclaredField("h"));
             } catch (NoSuchFieldException ignored) {
                 for (String fieldName : new String[]{"g", "i", "k"}) {
                     try {
-                        entityIconField = entityClass.getDeclaredField(fieldName);
-                        entityIconField.setAccessible(true);
+                        entityIconField = Accessors.field(entityClass.getDeclaredField(fieldName));
                         break;
                     } catch (NoSuchFieldException ignored2) {}
                 }
             }
 
-            entityConstructor = entityClass.getConstructor(long.class);
-            entityConstructor.setAccessible(true);
+            entityFactory = Accessors.entityFactory(entityClass.getConstructor(long.class));
 
-            adapterDataField = adapterClass.getDeclaredField("e");
-            adapterDataField.setAccessible(true);
+            adapterDataField = Accessors.field(adapterClass.getDeclaredField("e"));
 
             classesResolved = true;
 
@@ -561,7 +841,7 @@ public class HotSitesHook {
 
     private void hookRecyclerViewFallback() {
         try {
-            XposedHelpers.findAndHookMethod(
+            setAdapterUnhook = XposedHelpers.findAndHookMethod(
                     "androidx.recyclerview.widget.RecyclerView",
                     lpparam.classLoader,
                     "setAdapter",
@@ -572,15 +852,28 @@ public class HotSitesHook {
                             Object adapter = param.args[0];
                             if (adapter == null) return;
 
-                            String className = adapter.getClass().getName();
+                            Class<?> cls = adapter.getClass();
+                            if (rejectedAdapterClasses.contains(cls) || candidateAdapters.containsKey(cls)) return;
+
+                            String className = cls.getName();
 
                             if (className.startsWith("android.") || className.startsWith("androidx.")) {
+                                rejectedAdapterClasses.add(cls);
                                 return;
                             }
 
-                            if (isLikelyHotSitesAdapter(adapter)) {
+                            int verdict = inspectAdapter(adapter);
+                            if (verdict == ADAPTER_REJECTED) {
+                                rejectedAdapterClasses.add(cls);
+                            } else if (verdict == ADAPTER_LIKELY) {
                                 XposedBridge.log("[" + TAG + "] HotSitesHook: Found likely adapter: " + className);
-                                hookAdapterDataSetter(adapter);
+                                AdapterSetter setter = hookAdapterDataSetter(adapter);
+                                if (setter != null) {
+                                    candidateAdapters.put(cls, setter);
+                                    if (className.equals(ADAPTER_CLASS)) {
+                                        confirmAdapter(cls);
+                                    }
+                                }
                             }
                         }
                     }
@@ -591,11 +884,16 @@ public class HotSitesHook {
         }
     }
 
-    private boolean isLikelyHotSitesAdapter(Object adapter) {
+    /**
+     * 判断适配器是否为热门网站适配器
+     * 只有所有 List 字段都已有数据且均不含 URL 实体时才判定为否；列表为空时无法判断，下次 setAdapter 再检查
+     */
+    private int inspectAdapter(Object adapter) {
         String className = adapter.getClass().getName();
 
-        if (className.equals(ADAPTER_CLASS)) return true;
+        if (className.equals(ADAPTER_CLASS)) return ADAPTER_LIKELY;
 
+        boolean inconclusive = false;
         try {
             for (Field field : adapter.getClass().getDeclaredFields()) {
                 if (!List.class.isAssignableFrom(field.getType())) continue;
@@ -603,20 +901,112 @@ public class HotSitesHook {
                 field.setAccessible(true);
                 Object value = field.get(adapter);
 
-                if (!(value instanceof List)) continue;
-                List<?> list = (List<?>) value;
-                if (list.isEmpty()) continue;
+                if (!(value instanceof List) || ((List<?>) value).isEmpty()) {
+                    inconclusive = true;
+                    continue;
+                }
 
-                Object entity = list.get(0);
+                Object entity = ((List<?>) value).get(0);
                 if (entity != null && hasUrlField(entity)) {
-                    return true;
+                    return ADAPTER_LIKELY;
                 }
             }
-        } catch (Throwable ignored) {}
+        } catch (Throwable t) {
+            return ADAPTER_UNKNOWN;
+        }
+
+        return inconclusive ? ADAPTER_UNKNOWN : ADAPTER_REJECTED;
+    }
 
+    /**
+     * 确认候选适配器所需的强证据：类名与已知适配器一致，
+     * 或列表元素类型就是容器/直接发现得到的实体类（或已知实体类名）
+     * 仅“能分类出 URL 字段”不算，资讯、书签、历史等列表同样满足
+     */
+    private boolean isHotSitesAdapter(Class<?> adapterCls, AdapterLayout layout) {
+        if (adapterCls.getName().equals(ADAPTER_CLASS)) return true;
+        if (layout == null || layout.entityClass == null) return false;
+        Class<?> known = entityClass;
+        if (known != null && layout.entityClass == known) return true;
+        return layout.entityClass.getName().equals(ENTITY_CLASS);
+    }
+
+    /**
+     * 候选适配器被确认为热门网站适配器：移除全局 setAdapter hook 和其他候选类上的 hook
+     */
+    private synchronized void confirmAdapter(Class<?> cls) {
+        if (confirmedAdapterClass != null) return;
+        AdapterSetter confirmed = candidateAdapters.get(cls);
+        if (confirmed == null) return;
+
+        confirmedAdapterClass = cls;
+        XposedBridge.log("[" + TAG + "] HotSitesHook: Confirmed hot sites adapter: " + cls.getName());
+        persistAdapterMappings(cls, confirmed.methodName, confirmed.paramType);
+
+        removeSetAdapterHook();
+        for (Map.Entry<Class<?>, AdapterSetter> entry : candidateAdapters.entrySet()) {
+            if (entry.getKey() == cls) continue;
+            try {
+                entry.getValue().unhook.unhook();
+                XposedBridge.log("[" + TAG + "] HotSitesHook: Unhooked candidate " + entry.getKey().getName());
+            } catch (Throwable ignored) {}
+        }
+        candidateAdapters.keySet().retainAll(Collections.singleton(cls));
+    }
+
+    /**
+     * 恢复的适配器有数据却不满足确认条件：记录已失效（例如上次确认有误或浏览器已更新），
+     * 清除记录、撤销其 hook，并重新安装 setAdapter 兜底以便本次进程内继续查找
+     */
+    private synchronized void invalidateRestoredAdapter(Class<?> cls) {
+        if (!restoredAdapterUnverified || confirmedAdapterClass != cls) return;
+        restoredAdapterUnverified = false;
+        confirmedAdapterClass = null;
+
+        XposedBridge.log("[" + TAG + "] HotSitesHook: Restored adapter " + cls.getName() + " is not the hot sites adapter, rediscovering");
+        Context context = getContext();
+        if (context != null) {
+            MappingStore.clear(context, MAPPING_NAMESPACE);
+        }
+
+        AdapterSetter restored = candidateAdapters.remove(cls);
+        if (restored != null) {
+            try {
+                restored.unhook.unhook();
+            } catch (Throwable ignored) {}
+        }
+        rejectedAdapterClasses.add(cls);
+        hookRecyclerViewFallback();
+    }
+
+    private static boolean hasListData(Object adapter) {
+        try {
+            for (Field field : adapter.getClass().getDeclaredFields()) {
+                if (!List.class.isAssignableFrom(field.getType())) continue;
+                field.setAccessible(true);
+                Object value = field.get(adapter);
+                if (value instanceof List && !((List<?>) value).isEmpty()) return true;
+            }
+        } catch (Throwable ignored) {}
         return false;
     }
 
+    /**
+     * 确认热门网站适配器后移除全局 setAdapter hook，浏览器其他列表不再有额外开销
+     */
+    private void removeSetAdapterHook() {
+        XC_MethodHook.Unhook unhook = setAdapterUnhook;
+        if (unhook == null) return;
+        setAdapterUnhook = null;
+        try {
+            unhook.unhook();
+            rejectedAdapterClasses.clear();
+            XposedBridge.log("[" + TAG + "] HotSitesHook: RecyclerView fallback hook removed");
+        } catch (Throwable t) {
+            XposedBridge.log("[" + TAG + "] HotSitesHook: Failed to remove fallback hook: " + t.getMessage());
+        }
+    }
+
     private boolean hasUrlField(Object entity) {
         if (entity == null) return false;
 
@@ -635,7 +1025,10 @@ public class HotSitesHook {
         return false;
     }
 
-    private void hookAdapterDataSetter(Object adapter) {
+    /**
+     * hook 候选适配器的数据设置方法，返回已 hook 的方法；失败时返回 null
+     */
+    private AdapterSetter hookAdapterDataSetter(Object adapter) {
         try {
             Class<?> cls = adapter.getClass();
 
@@ -655,29 +1048,17 @@ public class HotSitesHook {
                 }
 
                 if (hasListGetter) {
-                    final String methodName = method.getName();
-                    XposedHelpers.findAndHookMethod(cls, methodName, paramType, new XC_MethodHook() {
-                        @Override
-                        protected void afterHookedMethod(MethodHookParam param) throws Throwable {
-                            XposedBridge.log("[" + TAG + "] HotSitesHook: " + methodName + "() called (fallback)");
-                            processAdapterDynamic(param.thisObject);
-                        }
-                    });
-                    XposedBridge.log("[" + TAG + "] HotSitesHook: Hooked " + cls.getName() + "." + methodName);
-                    return;
+                    XC_MethodHook.Unhook unhook = hookDynamicSetter(cls, method.getName(), paramType);
+                    return new AdapterSetter(method.getName(), paramType, unhook);
                 }
             }
 
-            XposedHelpers.findAndHookMethod(cls, "notifyDataSetChanged", new XC_MethodHook() {
-                @Override
-                protected void beforeHookedMethod(MethodHookParam param) throws Throwable {
-                    processAdapterDynamic(param.thisObject);
-                }
-            });
-            XposedBridge.log("[" + TAG + "] HotSitesHook: Hooked notifyDataSetChanged on " + cls.getName());
+            XC_MethodHook.Unhook unhook = hookDynamicSetter(cls, "notifyDataSetChanged", null);
+            return new AdapterSetter("notifyDataSetChanged", null, unhook);
 
         } catch (Throwable t) {
             XposedBridge.log("[" + TAG + "] HotSitesHook: hookAdapterDataSetter failed: " + t.getMessage());
+            return null;
         }
     }
 
@@ -699,7 +1080,7 @@ public class HotSitesHook {
                         field.setAccessible(true);
                         Object value = field.get(adapter);
                         if (value instanceof List && !((List<?>) value).isEmpty()) {
-                            adapterDataField = field;
+                            adapterDataField = Accessors.field(field);
                             break;
                         }
                     }
@@ -727,10 +1108,7 @@ public class HotSitesHook {
             }
 
             // Report original sites
-            if (!hasReportedSites) {
-                reportDiscoveredSites(context, originalList);
-                hasReportedSites = true;
-            }
+            reportDiscoveredSites(context, originalList, entityNameField, entityUrlField, entityIconField);
 
             // Check module
             HotSitePrefsCache.refresh(context);
@@ -745,31 +1123,17 @@ public class HotSitesHook {
                 return;
             }
 
-            // Build replacement
-            List<Object> newList = new ArrayList<>();
-            for (HotSitePrefsCache.SiteConfig config : configs) {
-                if (!config.enabled) continue;
-
-                try {
-                    Object site = createEntity(entityConstructor, config.id);
-                    if (site == null) continue;
-
-                    if (entityNameField != null) entityNameField.set(site, config.name);
-                    if (entityUrlField != null) entityUrlField.set(site, config.url);
-                    if (entityIconField != null && config.iconUrl != null && !config.iconUrl.isEmpty()) {
-                        entityIconField.set(site, config.iconUrl);
-                    }
-                    newList.add(site);
-                    XposedBridge.log("[" + TAG + "] HotSitesHook: Created: " + config.name + " -> " + config.url);
-                } catch (Exception e) {
-                    XposedBridge.log("[" + TAG + "] HotSitesHook: Entity creation failed: " + e.getMessage());
-                }
-            }
+            // Build replacement（按配置代数复用已构建的实体）
+            if (entityClass == null || entityUrlField == null) return;
+            List<Object> newList = replacementEntities(context, entityClass, entityFactory,
+                    entityNameField, entityUrlField, entityIconField);
 
             if (!newList.isEmpty()) {
-                originalList.clear();
-                originalList.addAll(newList);
-                XposedBridge.log("[" + TAG + "] HotSitesHook: Replaced with " + newList.size() + " sites");
+                int changed = applyReplacement(adapter, originalList, newList,
+                        entityNameField, entityUrlField, entityIconField);
+                if (changed > 0) {
+                    XposedBridge.log("[" + TAG + "] HotSitesHook: Replaced " + changed + " of " + newList.size() + " sites");
+                }
             }
 
         } catch (Throwable t) {
@@ -797,22 +1161,19 @@ public class HotSitesHook {
                 if (val == null) continue;
 
                 if (val.startsWith("http://") || val.startsWith("https://")) {
-                    if (entityUrlField == null) entityUrlField = f;
+                    if (entityUrlField == null) entityUrlField = Accessors.field(f);
                 } else if (val.length() > 0 && val.length() < 50 && !val.contains("/")) {
-                    if (entityNameField == null) entityNameField = f;
+                    if (entityNameField == null) entityNameField = Accessors.field(f);
                 } else if (val.contains(".png") || val.contains(".jpg") ||
                         val.contains(".ico") || val.contains(".webp")) {
-                    if (entityIconField == null) entityIconField = f;
+                    if (entityIconField == null) entityIconField = Accessors.field(f);
                 }
             } catch (Throwable ignored) {}
         }
 
         // 获取构造函数
-        if (entityConstructor == null) {
-            entityConstructor = findSuitableConstructor(cls);
-            if (entityConstructor != null) {
-                entityConstructor.setAccessible(true);
-            }
+        if (entityFactory == null) {
+            entityFactory = Accessors.entityFactory(findSuitableConstructor(cls));
         }
 
         XposedBridge.log("[" + TAG + "] HotSitesHook: Dynamic fields resolved - name=" +
@@ -829,118 +1190,484 @@ public class HotSitesHook {
             Context context = getContext();
             if (context == null) return;
 
-            Field listField = null;
-            List<Object> dataList = null;
+            Class<?> cls = adapter.getClass();
+            AdapterLayout layout = adapterLayout(adapter);
+            if (confirmedAdapterClass != cls) {
+                // 尚未确认的候选：没有强证据时不替换、不上报，全局 hook 和其余候选保持不变
+                if (layout == null || !isHotSitesAdapter(cls, layout)) return;
+                confirmAdapter(cls);
+                if (confirmedAdapterClass != cls) return;
+            } else if (restoredAdapterUnverified) {
+                // 恢复的记录按同一强证据验证；有数据却不满足时记录失效，列表为空时留到下次
+                if (layout == null || !isHotSitesAdapter(cls, layout)) {
+                    if (layout != null || hasListData(adapter)) {
+                        invalidateRestoredAdapter(cls);
+                    }
+                    return;
+                }
+                restoredAdapterUnverified = false;
+            } else if (layout == null) {
+                return;
+            }
 
-            for (Field field : adapter.getClass().getDeclaredFields()) {
-                if (!List.class.isAssignableFrom(field.getType())) continue;
+            List<Object> dataList = layout.dataList(adapter);
+            if (dataList == null || dataList.isEmpty()) return;
 
-                field.setAccessible(true);
-                Object value = field.get(adapter);
+            XposedBridge.log("[" + TAG + "] HotSitesHook: Dynamic processing " + dataList.size() + " items");
 
-                if (!(value instanceof List)) continue;
-                List<?> list = (List<?>) value;
-                if (list.isEmpty()) continue;
+            final Accessors.FieldAccessor fNameField = layout.nameField;
+            final Accessors.FieldAccessor fUrlField = layout.urlField;
+            final Accessors.FieldAccessor fIconField = layout.iconField;
 
-                Object entity = list.get(0);
-                if (entity != null && hasUrlField(entity)) {
-                    listField = field;
-                    dataList = (List<Object>) value;
-                    break;
+            reportDiscoveredSites(context, dataList, fNameField, fUrlField, fIconField);
+
+            HotSitePrefsCache.refresh(context);
+            if (!HotSitePrefsCache.isModuleEnabled()) return;
+
+            List<HotSitePrefsCache.SiteConfig> configs = HotSitePrefsCache.getSiteConfigs(context);
+            if (configs.isEmpty()) return;
+
+            List<Object> newList = replacementEntities(context, layout.entityClass, layout.factory,
+                    fNameField, fUrlField, fIconField);
+
+            if (!newList.isEmpty()) {
+                int changed = applyReplacement(adapter, dataList, newList, fNameField, fUrlField, fIconField);
+                if (changed > 0) {
+                    XposedBridge.log("[" + TAG + "] HotSitesHook: Dynamic replacement: " + changed + " of " + newList.size() + " sites");
                 }
             }
 
-            if (listField == null || dataList == null || dataList.isEmpty()) {
-                return;
+        } catch (Throwable t) {
+            XposedBridge.log("[" + TAG + "] HotSitesHook: Dynamic processing failed: " + t.getMessage());
+        } finally {
+            isProcessing = false;
+        }
+    }
+
+    /**
+     * 返回适配器类的字段布局；首次遇到该类（或实体类发生变化）时用当前数据做一次分类，之后直接复用
+     */
+    private AdapterLayout adapterLayout(Object adapter) throws Throwable {
+        Class<?> adapterCls = adapter.getClass();
+
+        AdapterLayout layout = adapterLayouts.get(adapterCls);
+        if (layout != null) {
+            List<Object> dataList = layout.dataList(adapter);
+            if (dataList == null || dataList.isEmpty()) return layout;
+            Object first = dataList.get(0);
+            if (first == null || first.getClass() == layout.entityClass || injectedSites.get(first) != null) {
+                return layout;
             }
+        }
 
-            XposedBridge.log("[" + TAG + "] HotSitesHook: Dynamic processing " + dataList.size() + " items");
+        layout = classifyAdapter(adapter);
+        if (layout != null) {
+            adapterLayouts.put(adapterCls, layout);
+        }
+        return layout;
+    }
 
-            Object sampleEntity = dataList.get(0);
-            Class<?> entityCls = sampleEntity.getClass();
+    @SuppressWarnings("unchecked")
+    private AdapterLayout classifyAdapter(Object adapter) throws Throwable {
+        Field listField = null;
+        Object sampleEntity = null;
 
-            Field nameField = null;
-            Field urlField = null;
-            Field iconField = null;
+        for (Field field : adapter.getClass().getDeclaredFields()) {
+            if (!List.class.isAssignableFrom(field.getType())) continue;
 
-            for (Field f : entityCls.getDeclaredFields()) {
-                if (f.getType() != String.class) continue;
-                f.setAccessible(true);
+            field.setAccessible(true);
+            Object value = field.get(adapter);
 
-                try {
-                    String val = (String) f.get(sampleEntity);
-                    if (val == null) continue;
-
-                    if (val.startsWith("http://") || val.startsWith("https://")) {
-                        if (urlField == null) urlField = f;
-                    } else if (val.length() > 0 && val.length() < 30 && !val.contains("/") && !val.contains(".")) {
-                        if (nameField == null) nameField = f;
-                    } else if (val.contains(".png") || val.contains(".jpg") || val.contains(".ico") || val.contains(".webp")) {
-                        if (iconField == null) iconField = f;
-                    }
-                } catch (Throwable ignored) {}
+            if (!(value instanceof List)) continue;
+            List<?> list = (List<?>) value;
+            if (list.isEmpty()) continue;
+
+            Object entity = list.get(0);
+            if (entity != null && hasUrlField(entity)) {
+                listField = field;
+                sampleEntity = entity;
+                break;
             }
+        }
 
-            if (urlField == null) {
-                XposedBridge.log("[" + TAG + "] HotSitesHook: Could not find URL field");
-                return;
+        if (listField == null) return null;
+
+        Class<?> entityCls = sampleEntity.getClass();
+
+        Field nameField = null;
+        Field urlField = null;
+        Field iconField = null;
+
+        for (Field f : entityCls.getDeclaredFields()) {
+            if (f.getType() != String.class) continue;
+            f.setAccessible(true);
+
+            try {
+                String val = (String) f.get(sampleEntity);
+                if (val == null) continue;
+
+                if (val.startsWith("http://") || val.startsWith("https://")) {
+                    if (urlField == null) urlField = f;
+                } else if (val.length() > 0 && val.length() < 30 && !val.contains("/") && !val.contains(".")) {
+                    if (nameField == null) nameField = f;
+                } else if (val.contains(".png") || val.contains(".jpg") || val.contains(".ico") || val.contains(".webp")) {
+                    if (iconField == null) iconField = f;
+                }
+            } catch (Throwable ignored) {}
+        }
+
+        if (urlField == null) {
+            XposedBridge.log("[" + TAG + "] HotSitesHook: Could not find URL field");
+            return null;
+        }
+
+        // 编译一次访问器，后续逐个实体读写不再走反射
+        return new AdapterLayout(Accessors.field(listField), entityCls,
+                Accessors.field(nameField), Accessors.field(urlField), Accessors.field(iconField),
+                Accessors.entityFactory(findSuitableConstructor(entityCls)));
+    }
+
+    /**
+     * 返回当前配置对应的替换实体列表
+     * 配置代数、实体类与字段布局都未变时复用上次构建的实体；适配器改动过的实体（字段与配置不一致）单独重建
+     * factory 为 null 时在需要重建缓存时才查找构造函数
+     */
+    private List<Object> replacementEntities(Context context, Class<?> entityCls,
+                                             Accessors.EntityFactory factory,
+                                             Accessors.FieldAccessor nameField,
+                                             Accessors.FieldAccessor urlField,
+                                             Accessors.FieldAccessor iconField) {
+        // 代数与列表取自同一快照，不会把旧列表缓存在新代数下
+        HotSitePrefsCache.Snapshot sites = HotSitePrefsCache.getSnapshot(context);
+        long generation = sites.generation;
+        String layout = layoutOf(nameField, urlField, iconField);
+
+        SiteEntities cached = siteEntities;
+        if (cached == null || !cached.matches(generation, entityCls, layout)) {
+            if (factory == null) {
+                factory = Accessors.entityFactory(findSuitableConstructor(entityCls));
+            }
+            if (factory == null) {
+                XposedBridge.log("[" + TAG + "] HotSitesHook: No suitable constructor");
+                return new ArrayList<>();
             }
 
-            if (!hasReportedSites) {
-                reportDiscoveredSitesDynamic(context, dataList, nameField, urlField, iconField);
-                hasReportedSites = true;
+            List<HotSitePrefsCache.SiteConfig> enabled = new ArrayList<>();
+            for (HotSitePrefsCache.SiteConfig config : sites.sites) {
+                if (config.enabled) enabled.add(config);
             }
+            cached = new SiteEntities(generation, entityCls, layout, factory, enabled);
+            siteEntities = cached;
+        }
 
-            HotSitePrefsCache.refresh(context);
-            if (!HotSitePrefsCache.isModuleEnabled()) return;
+        List<Object> result = new ArrayList<>(cached.configs.size());
+        for (int i = 0; i < cached.configs.size(); i++) {
+            HotSitePrefsCache.SiteConfig config = cached.configs.get(i);
+            Object site = cached.entities[i];
 
-            List<HotSitePrefsCache.SiteConfig> configs = HotSitePrefsCache.getSiteConfigs(context);
-            if (configs.isEmpty()) return;
+            if (site == null || !isUnmodified(site, config, nameField, urlField, iconField)) {
+                site = createSiteEntity(cached.factory, config, nameField, urlField, iconField);
+                if (site == null) continue;
+                cached.entities[i] = site;
+            }
+            result.add(site);
+        }
+        return result;
+    }
 
-            Constructor<?> constructor = findSuitableConstructor(entityCls);
-            if (constructor == null) {
-                XposedBridge.log("[" + TAG + "] HotSitesHook: No suitable constructor");
-                return;
+    /**
+     * 把适配器的数据列表修补为目标列表，返回受影响的条目数
+     * 按 URL 对齐新旧列表（最长公共子序列）：对齐的条目内容一致时保持不动，否则原位替换；
+     * 只在一侧出现的条目按实际位置插入或删除，两侧都有但顺序变化的条目按移动处理。
+     * 相邻的同类操作合并为一次范围通知，首页磁贴的重新绑定数量与实际变化成正比。
+     * 范围通知使用数据列表下标，只有修改前后 getItemCount() 都等于列表长度（没有页眉、页脚等额外条目）
+     * 时才逐项通知，否则整体 notifyDataSetChanged
+     */
+    private int applyReplacement(Object adapter, List<Object> current, List<Object> desired,
+                                 Accessors.FieldAccessor nameField,
+                                 Accessors.FieldAccessor urlField,
+                                 Accessors.FieldAccessor iconField) {
+        Object[] oldItems = current.toArray();
+        int n = oldItems.length;
+        int m = desired.size();
+        String[] oldKeys = new String[n];
+        String[] newKeys = new String[m];
+        for (int i = 0; i < n; i++) oldKeys[i] = siteKey(oldItems[i], urlField);
+        for (int j = 0; j < m; j++) newKeys[j] = siteKey(desired.get(j), urlField);
+
+        // lcs[i][j]：oldKeys[i..] 与 newKeys[j..] 的最长公共子序列长度（磁贴数量很少，直接 O(n*m)）
+        int[][] lcs = new int[n + 1][m + 1];
+        for (int i = n - 1; i >= 0; i--) {
+            for (int j = m - 1; j >= 0; j--) {
+                lcs[i][j] = Objects.equals(oldKeys[i], newKeys[j])
+                        ? lcs[i + 1][j + 1] + 1
+                        : Math.max(lcs[i + 1][j], lcs[i][j + 1]);
             }
-            constructor.setAccessible(true);
+        }
 
-            final Field fNameField = nameField;
-            final Field fUrlField = urlField;
-            final Field fIconField = iconField;
+        // 对齐结果：按顺序排列的 匹配 / 删除 / 插入 操作
+        List<int[]> steps = new ArrayList<>();
+        int i = 0;
+        int j = 0;
+        while (i < n || j < m) {
+            if (i < n && j < m && Objects.equals(oldKeys[i], newKeys[j])) {
+                steps.add(new int[]{STEP_MATCH, i++, j++});
+            } else if (j < m && (i == n || lcs[i][j + 1] >= lcs[i + 1][j])) {
+                steps.add(new int[]{STEP_INSERT, -1, j++});
+            } else {
+                steps.add(new int[]{STEP_REMOVE, i++, -1});
+            }
+        }
 
-            List<Object> newList = new ArrayList<>();
-            for (HotSitePrefsCache.SiteConfig config : configs) {
-                if (!config.enabled) continue;
+        // 删除与插入中 URL 相同的条目配对为移动
+        int[] moveTarget = new int[n];
+        int[] moveSource = new int[m];
+        Arrays.fill(moveTarget, -1);
+        Arrays.fill(moveSource, -1);
+        for (int[] insert : steps) {
+            if (insert[0] != STEP_INSERT) continue;
+            for (int[] remove : steps) {
+                if (remove[0] == STEP_REMOVE && moveTarget[remove[1]] < 0
+                        && Objects.equals(oldKeys[remove[1]], newKeys[insert[2]])) {
+                    moveTarget[remove[1]] = insert[2];
+                    moveSource[insert[2]] = remove[1];
+                    break;
+                }
+            }
+        }
+
+        boolean positionsMatch = itemCount(adapter) == n;
+
+        // 在数据列表上依次执行，pos 始终是当前列表中的实际位置
+        RangeNotifier notifier = new RangeNotifier(adapter);
+        boolean[] moved = new boolean[n];
+        int pos = 0;
+        for (int[] step : steps) {
+            if (step[0] == STEP_MATCH) {
+                replaceIfDifferent(current, pos, desired.get(step[2]), notifier, nameField, urlField, iconField);
+                pos++;
+            } else if (step[0] == STEP_REMOVE) {
+                int oldIndex = step[1];
+                if (moved[oldIndex]) continue;
+                if (moveTarget[oldIndex] >= 0) {
+                    // 稍后移动到插入位置，暂时留在原处
+                    pos++;
+                    continue;
+                }
+                current.remove(pos);
+                notifier.removed(pos);
+            } else {
+                int newIndex = step[2];
+                int source = moveSource[newIndex];
+                if (source < 0) {
+                    current.add(pos, desired.get(newIndex));
+                    notifier.inserted(pos);
+                    pos++;
+                    continue;
+                }
 
+                int from = indexOfIdentity(current, oldItems[source]);
+                if (from < 0) continue;
+                // 来源在前（已经过的位置）时移除后目标位置前移一位
+                int to = from < pos ? pos - 1 : pos;
+                current.add(to, current.remove(from));
+                notifier.moved(from, to);
+                moved[source] = true;
+                replaceIfDifferent(current, to, desired.get(newIndex), notifier, nameField, urlField, iconField);
+                if (from >= pos) pos++;
+            }
+        }
+        notifier.flush();
+        if (notifier.affected > 0) {
+            if (positionsMatch && itemCount(adapter) == current.size()) {
+                notifier.dispatch();
+            } else {
                 try {
-                    Object site = createEntity(constructor, config.id);
-                    if (site == null) continue;
+                    XposedHelpers.callMethod(adapter, "notifyDataSetChanged");
+                } catch (Throwable t) {
+                    XposedBridge.log("[" + TAG + "] HotSitesHook: notifyDataSetChanged failed: " + t.getMessage());
+                }
+            }
+        }
+        return notifier.affected;
+    }
 
-                    if (fNameField != null) fNameField.set(site, config.name);
-                    fUrlField.set(site, config.url);
-                    if (fIconField != null && config.iconUrl != null && !config.iconUrl.isEmpty()) {
-                        fIconField.set(site, config.iconUrl);
-                    }
+    /**
+     * 适配器的 getItemCount()；调用失败时返回 -1（按位置不一致处理）
+     */
+    private static int itemCount(Object adapter) {
+        try {
+            Object count = XposedHelpers.callMethod(adapter, "getItemCount");
+            return count instanceof Integer ? (Integer) count : -1;
+        } catch (Throwable t) {
+            return -1;
+        }
+    }
+
+    private static final int STEP_MATCH = 0;
+    private static final int STEP_REMOVE = 1;
+    private static final int STEP_INSERT = 2;
+
+    private static void replaceIfDifferent(List<Object> current, int position, Object desired, RangeNotifier notifier,
+                                           Accessors.FieldAccessor nameField,
+                                           Accessors.FieldAccessor urlField,
+                                           Accessors.FieldAccessor iconField) {
+        if (sameSite(current.get(position), desired, nameField, urlField, iconField)) return;
+        current.set(position, desired);
+        notifier.changed(position);
+    }
+
+    private static String siteKey(Object site, Accessors.FieldAccessor urlField) {
+        try {
+            return site != null ? (String) urlField.get(site) : null;
+        } catch (Throwable t) {
+            return null;
+        }
+    }
+
+    private static int indexOfIdentity(List<Object> list, Object item) {
+        for (int k = 0; k < list.size(); k++) {
+            if (list.get(k) == item) return k;
+        }
+        return -1;
+    }
+
+    /**
+     * 把逐条的变化合并为范围通知：连续位置的替换、同一位置连续的删除、连续位置的插入各合并为一次
+     * 通知先缓存，确认适配器位置与列表下标一致后由 dispatch() 按顺序发出
+     */
+    private static final class RangeNotifier {
+        private static final int NONE = 0;
+        private static final int CHANGED = 1;
+        private static final int INSERTED = 2;
+        private static final int REMOVED = 3;
+
+        private final Object adapter;
+        // 待发出的通知：{方法名, 参数1, 参数2}
+        private final List<Object[]> pending = new ArrayList<>();
+        private int type = NONE;
+        private int start = 0;
+        private int count = 0;
+        int affected = 0;
+
+        RangeNotifier(Object adapter) {
+            this.adapter = adapter;
+        }
+
+        void changed(int position) {
+            add(CHANGED, position, start + count);
+        }
 
-                    newList.add(site);
-                } catch (Exception e) {
-                    XposedBridge.log("[" + TAG + "] HotSitesHook: Dynamic entity creation failed: " + e.getMessage());
+        void inserted(int position) {
+            add(INSERTED, position, start + count);
+        }
+
+        void removed(int position) {
+            add(REMOVED, position, start);
+        }
+
+        void moved(int from, int to) {
+            flush();
+            affected++;
+            if (from != to) {
+                pending.add(new Object[]{"notifyItemMoved", from, to});
+            }
+        }
+
+        private void add(int newType, int position, int expected) {
+            affected++;
+            if (type == newType && position == expected) {
+                count++;
+                return;
+            }
+            flush();
+            type = newType;
+            start = position;
+            count = 1;
+        }
+
+        void flush() {
+            if (type == CHANGED) pending.add(new Object[]{"notifyItemRangeChanged", start, count});
+            else if (type == INSERTED) pending.add(new Object[]{"notifyItemRangeInserted", start, count});
+            else if (type == REMOVED) pending.add(new Object[]{"notifyItemRangeRemoved", start, count});
+            type = NONE;
+            count = 0;
+        }
+
+        void dispatch() {
+            for (Object[] call : pending) {
+                try {
+                    XposedHelpers.callMethod(adapter, (String) call[0], call[1], call[2]);
+                } catch (Throwable t) {
+                    XposedBridge.log("[" + TAG + "] HotSitesHook: " + call[0] + " failed: " + t.getMessage());
                 }
             }
+            pending.clear();
+        }
+    }
 
-            if (!newList.isEmpty()) {
-                dataList.clear();
-                dataList.addAll(newList);
-                XposedBridge.log("[" + TAG + "] HotSitesHook: Dynamic replacement: " + newList.size() + " sites");
+    private static boolean sameSite(Object a, Object b,
+                                    Accessors.FieldAccessor nameField,
+                                    Accessors.FieldAccessor urlField,
+                                    Accessors.FieldAccessor iconField) {
+        if (a == b) return true;
+        if (a == null || b == null || a.getClass() != b.getClass()) return false;
+        try {
+            if (!Objects.equals(urlField.get(a), urlField.get(b))) return false;
+            if (nameField != null && !Objects.equals(nameField.get(a), nameField.get(b))) return false;
+            if (iconField != null && !Objects.equals(iconField.get(a), iconField.get(b))) return false;
+            return true;
+        } catch (Throwable t) {
+            return false;
+        }
+    }
+
+    private Object createSiteEntity(Accessors.EntityFactory factory, HotSitePrefsCache.SiteConfig config,
+                                    Accessors.FieldAccessor nameField,
+                                    Accessors.FieldAccessor urlField,
+                                    Accessors.FieldAccessor iconField) {
+        try {
+            Object site = factory.create(config.id);
+            if (site == null) return null;
+
+            if (nameField != null) nameField.set(site, config.name);
+            urlField.set(site, config.url);
+            if (iconField != null && config.iconUrl != null && !config.iconUrl.isEmpty()) {
+                iconField.set(site, config.iconUrl);
             }
 
+            injectedSites.put(site, Boolean.TRUE);
+            XposedBridge.log("[" + TAG + "] HotSitesHook: Created: " + config.name + " -> " + config.url);
+            return site;
+        } catch (Throwable e) {
+            XposedBridge.log("[" + TAG + "] HotSitesHook: Entity creation failed: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static boolean isUnmodified(Object site, HotSitePrefsCache.SiteConfig config,
+                                        Accessors.FieldAccessor nameField,
+                                        Accessors.FieldAccessor urlField,
+                                        Accessors.FieldAccessor iconField) {
+        try {
+            if (!Objects.equals(urlField.get(site), config.url)) return false;
+            if (nameField != null && !Objects.equals(nameField.get(site), config.name)) return false;
+            if (iconField != null && config.iconUrl != null && !config.iconUrl.isEmpty()
+                    && !Objects.equals(iconField.get(site), config.iconUrl)) return false;
+            return true;
         } catch (Throwable t) {
-            XposedBridge.log("[" + TAG + "] HotSitesHook: Dynamic processing failed: " + t.getMessage());
-        } finally {
-            isProcessing = false;
+            return false;
         }
     }
 
+    private static String layoutOf(Accessors.FieldAccessor nameField,
+                                   Accessors.FieldAccessor urlField,
+                                   Accessors.FieldAccessor iconField) {
+        return (nameField != null ? nameField.getName() : "") + ':'
+                + urlField.getName() + ':'
+                + (iconField != null ? iconField.getName() : "");
+    }
+
     private Constructor<?> findSuitableConstructor(Class<?> entityCls) {
         try {
             return entityCls.getConstructor(long.class);
@@ -958,109 +1685,57 @@ public class HotSitesHook {
         return null;
     }
 
-    private Object createEntity(Constructor<?> constructor, long id) {
-        if (constructor == null) return null;
-
-        try {
-            Class<?>[] paramTypes = constructor.getParameterTypes();
-            if (paramTypes.length == 0) {
-                return constructor.newInstance();
-            } else if (paramTypes.length == 1 && paramTypes[0] == long.class) {
-                return constructor.newInstance(id);
-            } else {
-                Object[] args = new Object[paramTypes.length];
-                for (int i = 0; i < paramTypes.length; i++) {
-                    args[i] = getDefaultValue(paramTypes[i]);
-                    if (i == 0 && paramTypes[i] == long.class) {
-                        args[i] = id;
-                    }
-                }
-                return constructor.newInstance(args);
-            }
-        } catch (Exception e) {
-            return null;
-        }
-    }
-
-    private Object getDefaultValue(Class<?> type) {
-        if (type == boolean.class) return false;
-        if (type == byte.class) return (byte) 0;
-        if (type == char.class) return (char) 0;
-        if (type == short.class) return (short) 0;
-        if (type == int.class) return 0;
-        if (type == long.class) return 0L;
-        if (type == float.class) return 0.0f;
-        if (type == double.class) return 0.0;
-        return null;
+    private static boolean isSameField(Accessors.FieldAccessor accessor, Field field) {
+        return accessor != null && accessor.is(field);
     }
 
-    private void reportDiscoveredSites(Context context, List<Object> sites) {
+    /**
+     * 读取浏览器原始列表并提交给上报队列；顺序有意义（Provider 端按顺序保存），因此按原顺序计算哈希
+     * 模块端没有任何网站配置时强制上报，用于初始化用户列表
+     */
+    private void reportDiscoveredSites(Context context, List<Object> sites,
+                                       Accessors.FieldAccessor nameField,
+                                       Accessors.FieldAccessor urlField,
+                                       Accessors.FieldAccessor iconField) {
         try {
-            JSONArray array = new JSONArray();
-            long baseId = System.currentTimeMillis();
-
-            for (int i = 0; i < sites.size(); i++) {
-                Object site = sites.get(i);
-                JSONObject obj = new JSONObject();
-                obj.put("id", baseId + i);
-                if (entityNameField != null) {
-                    obj.put("name", entityNameField.get(site));
-                }
-                if (entityUrlField != null) {
-                    obj.put("url", entityUrlField.get(site));
-                }
-                if (entityIconField != null) {
-                    String icon = (String) entityIconField.get(site);
-                    if (icon != null && !icon.isEmpty()) {
-                        obj.put("iconUrl", icon);
-                    }
-                }
-                array.put(obj);
+            List<String[]> entries = new ArrayList<>(sites.size());
+            for (Object site : sites) {
+                if (injectedSites.get(site) != null) return;
+
+                String name = nameField != null ? (String) nameField.get(site) : null;
+                String url = urlField != null ? (String) urlField.get(site) : null;
+                String icon = iconField != null ? (String) iconField.get(site) : null;
+                entries.add(new String[]{name, url, icon});
             }
+            if (entries.isEmpty()) return;
 
-            ContentValues values = new ContentValues();
-            values.put("sites", array.toString());
-            context.getContentResolver().insert(Uri.parse(PROVIDER_HOTSITES_DISCOVER_URI), values);
-
-            XposedBridge.log("[" + TAG + "] HotSitesHook: Reported " + sites.size() + " discovered sites");
+            boolean force = HotSitePrefsCache.getSiteConfigs(context).isEmpty();
+            siteReporter.submit(context, entries, DiscoveryReporter.hash(entries), force);
 
         } catch (Throwable t) {
             XposedBridge.log("[" + TAG + "] HotSitesHook: Report failed: " + t.getMessage());
         }
     }
 
-    private void reportDiscoveredSitesDynamic(Context context, List<Object> sites,
-                                              Field nameField, Field urlField, Field iconField) {
-        try {
-            JSONArray array = new JSONArray();
-            long baseId = System.currentTimeMillis();
-
-            for (int i = 0; i < sites.size(); i++) {
-                Object site = sites.get(i);
-                JSONObject obj = new JSONObject();
-                obj.put("id", baseId + i);
-                if (nameField != null) {
-                    obj.put("name", nameField.get(site));
-                }
-                obj.put("url", urlField.get(site));
-                if (iconField != null) {
-                    String icon = (String) iconField.get(site);
-                    if (icon != null && !icon.isEmpty()) {
-                        obj.put("iconUrl", icon);
-                    }
-                }
-                array.put(obj);
-            }
-
-            ContentValues values = new ContentValues();
-            values.put("sites", array.toString());
-            context.getContentResolver().insert(Uri.parse(PROVIDER_HOTSITES_DISCOVER_URI), values);
+    private static void deliverDiscoveredSites(Context context, List<String[]> entries) throws Exception {
+        JSONArray array = new JSONArray();
+        long baseId = System.currentTimeMillis();
+
+        for (int i = 0; i < entries.size(); i++) {
+            String[] entry = entries.get(i);
+            JSONObject obj = new JSONObject();
+            obj.put("id", baseId + i);
+            if (entry[0] != null) obj.put("name", entry[0]);
+            if (entry[1] != null) obj.put("url", entry[1]);
+            if (entry[2] != null && !entry[2].isEmpty()) obj.put("iconUrl", entry[2]);
+            array.put(obj);
+        }
 
-            XposedBridge.log("[" + TAG + "] HotSitesHook: Reported " + sites.size() + " discovered sites (dynamic)");
+        ContentValues values = new ContentValues();
+        values.put("sites", array.toString());
+        ProviderConnection.insert(context, Uri.parse(PROVIDER_HOTSITES_DISCOVER_URI), values);
 
-        } catch (Throwable t) {
-            XposedBridge.log("[" + TAG + "] HotSitesHook: Dynamic report failed: " + t.getMessage());
-        }
+        XposedBridge.log("[" + TAG + "] HotSitesHook: Reported " + entries.size() + " discovered sites");
     }
 
     private Context getContext() {
@@ -0,0 +1,133 @@
+// app/src/main/java/com/upuaut/xposedsearch/hooks/MappingStore.java
+package com.upuaut.xposedsearch.hooks;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.content.pm.Signature;
+
+import org.json.JSONObject;
+
+import java.security.MessageDigest;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import de.robv.android.xposed.XposedBridge;
+
+/**
+ * 持久化 hook 解析出的混淆映射（方法名、字段名、构造签名等），保存在浏览器进程自己的 SharedPreferences
+ * 以浏览器 versionCode + 签名证书 SHA-256 作为指纹，浏览器升级或换包后记录自动失效
+ */
+final class MappingStore {
+
+    private static final String TAG = "XposedSearch";
+    private static final String PREF_NAME = "xposed_hook_mappings";
+    private static final String KEY_FINGERPRINT = "fingerprint";
+    private static final String KEY_VALUES = "values";
+
+    private static volatile String fingerprint = null;
+
+    private MappingStore() {}
+
+    /**
+     * 读取命名空间下的映射；不存在或指纹不匹配返回 null
+     */
+    static Map<String, String> load(Context context, String namespace) {
+        if (context == null) return null;
+        try {
+            String current = fingerprint(context);
+            if (current == null) return null;
+
+            String json = prefs(context).getString(namespace, null);
+            if (json == null) return null;
+
+            JSONObject root = new JSONObject(json);
+            if (!current.equals(root.optString(KEY_FINGERPRINT))) {
+                XposedBridge.log("[" + TAG + "] MappingStore: " + namespace + " fingerprint changed, discarding");
+                clear(context, namespace);
+                return null;
+            }
+
+            JSONObject values = root.getJSONObject(KEY_VALUES);
+            Map<String, String> result = new HashMap<>();
+            Iterator<String> keys = values.keys();
+            while (keys.hasNext()) {
+                String key = keys.next();
+                result.put(key, values.getString(key));
+            }
+            return result;
+        } catch (Throwable t) {
+            XposedBridge.log("[" + TAG + "] MappingStore: load " + namespace + " failed: " + t.getMessage());
+            return null;
+        }
+    }
+
+    static void save(Context context, String namespace, Map<String, String> values) {
+        if (context == null || values == null) return;
+        try {
+            String current = fingerprint(context);
+            if (current == null) return;
+
+            JSONObject json = new JSONObject();
+            for (Map.Entry<String, String> entry : values.entrySet()) {
+                if (entry.getValue() != null) {
+                    json.put(entry.getKey(), entry.getValue());
+                }
+            }
+
+            JSONObject root = new JSONObject();
+            root.put(KEY_FINGERPRINT, current);
+            root.put(KEY_VALUES, json);
+            prefs(context).edit().putString(namespace, root.toString()).apply();
+        } catch (Throwable t) {
+            XposedBridge.log("[" + TAG + "] MappingStore: save " + namespace + " failed: " + t.getMessage());
+        }
+    }
+
+    static void clear(Context context, String namespace) {
+        if (context == null) return;
+        try {
+            prefs(context).edit().remove(namespace).apply();
+        } catch (Throwable ignored) {}
+    }
+
+    private static SharedPreferences prefs(Context context) {
+        return context.getSharedPreferences(PREF_NAME, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * versionCode:签名证书 SHA-256，进程内只计算一次
+     */
+    private static String fingerprint(Context context) {
+        String cached = fingerprint;
+        if (cached != null) return cached;
+
+        try {
+            PackageInfo info = context.getPackageManager().getPackageInfo(
+                    context.getPackageName(), PackageManager.GET_SIGNING_CERTIFICATES);
+
+            StringBuilder sb = new StringBuilder();
+            sb.append(info.getLongVersionCode()).append(':');
+
+            Signature[] signers = info.signingInfo != null ? info.signingInfo.getApkContentsSigners() : null;
+            if (signers != null && signers.length > 0) {
+                MessageDigest digest = MessageDigest.getInstance("SHA-256");
+                for (Signature signer : signers) {
+                    digest.update(signer.toByteArray());
+                }
+                for (byte b : digest.digest()) {
+                    sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+                }
+            }
+
+            cached = sb.toString();
+            fingerprint = cached;
+            return cached;
+        } catch (Throwable t) {
+            XposedBridge.log("[" + TAG + "] MappingStore: fingerprint failed: " + t.getMessage());
+            return null;
+        }
+    }
+}
@@ -2,22 +2,22 @@
 package com.upuaut.xposedsearch.hooks;
 
 import android.app.AndroidAppHelper;
-import android.content.ContentValues;
 import android.content.Context;
-import android.net.Uri;
+import android.os.Bundle;
 
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.lang.reflect.Proxy;
-import java.net.URLEncoder;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import de.robv.android.xposed.XC_MethodHook;
 import de.robv.android.xposed.XposedBridge;
@@ -25,42 +25,125 @@ import de.robv.android.xposed.XposedHelpers;
 import de.robv.android.xposed.callbacks.XC_LoadPackage;
 
 import com.upuaut.xposedsearch.PrefsCache;
+import com.upuaut.xposedsearch.ProviderConnection;
+import com.upuaut.xposedsearch.SearchEngineProvider;
 
 public class SearchEngineHook {
 
     private static final String TAG = "XposedSearch";
-    private static final String PROVIDER_DISCOVER_URI = "content://com.upuaut.xposedsearch.provider/discover";
-    private static final String PROVIDER_DISCOVER_COMPLETE_URI = "content://com.upuaut.xposedsearch.provider/discover_complete";
     private static final String FIELD_CUSTOM_CONFIG = "xposed_custom_config";
 
-    private Context appContext;
+    // hook 回调可能来自浏览器的任意线程：共享集合使用并发结构，解析结果通过 volatile 字段发布，
+    // 解析完成后只读 volatile 的 isMappingResolved（无锁快速路径）；未完成时在 resolveLock 上串行执行，
+    // 并发调用方等待正在进行的解析结束而不是跳过，解析失败时不修改引擎列表
+    private volatile Context appContext;
     private XC_LoadPackage.LoadPackageParam lpparam;
-    private Set<String> reportedEngines = new HashSet<>();
-    private Set<String> currentDiscoveredKeys = new HashSet<>();
-    private Map<String, Object> customInstanceCache = new HashMap<>();
+    // 最近一次 n0 发现的内置 key，整轮收集完后一次性替换（不可变集合）
+    private volatile Set<String> currentDiscoveredKeys = Collections.emptySet();
+    // 自定义引擎实例池：按 (key, 配置指纹) 复用，配置变化时重建，已删除引擎的实例降级为软引用
+    private final CustomInstancePool customInstances = new CustomInstancePool();
 
-    private Class<?> searchEngineImplClass = null;
+    private final Object resolveLock = new Object();
+
+    // v() 兜底扫描的失败记录与退避，解析持续失败时不再每次查询都做反射扫描
+    private final DiscoveryAttemptTracker emergencyAttempts = new DiscoveryAttemptTracker("emergencyInit");
+
+    private volatile Class<?> searchEngineImplClass = null;
 
     // Dynamic method names
-    private String methodGetLabel = null;
-    private String methodGetSearchUrl = null;
-    private String methodGetQuery = null;
-    private String methodGetKey = null;
+    private volatile String methodGetLabel = null;
+    private volatile String methodGetSearchUrl = null;
+    private volatile String methodGetQuery = null;
+    private volatile String methodGetKey = null;
+
+    // 映射解析后编译的访问器（MethodHandle），热路径不再按名称查找方法
+    private volatile Accessors.StringGetter keyGetter = null;
+    private volatile Accessors.StringGetter labelGetter = null;
+    private volatile Accessors.StringGetter searchUrlGetter = null;
+
+    // 引擎实例 -> key / 自定义配置，每个实例只解析一次（弱引用，按身份索引）
+    private final WeakIdentityMap<Object, EngineIdentity> engineIdentities = new WeakIdentityMap<>();
+
+    private static final class EngineIdentity {
+        final String key;
+        final PrefsCache.EngineConfig customConfig;
+
+        EngineIdentity(String key, PrefsCache.EngineConfig customConfig) {
+            this.key = key;
+            this.customConfig = customConfig;
+        }
+    }
 
     // Original template engine info
-    private String templateKeyOriginalValue = null;
-    private String templateLabelOriginalValue = null;
+    private volatile String templateKeyOriginalValue = null;
+    private volatile String templateLabelOriginalValue = null;
 
     // 原始值缓存
-    private Map<String, String> originalLabels = new HashMap<>();
-    private Map<String, String> originalSearchUrls = new HashMap<>();
+    private final Map<String, String> originalLabels = new ConcurrentHashMap<>();
+    private final Map<String, String> originalSearchUrls = new ConcurrentHashMap<>();
+
+    // 最后写入：读到 true 时其余解析结果均已可见
+    private volatile boolean isMappingResolved = false;
+    private volatile Object cachedDataModel = null;
+    private volatile Constructor<?> cachedConstructor = null;
+    // 数据模型的来源成员："m:方法名" 或 "f:字段名"
+    private volatile String dataModelSource = null;
+
+    // 持久化映射（按浏览器版本 + 签名失效）
+    private static final String MAPPING_NAMESPACE = "search_engine";
+    private static final String MAP_IMPL_CLASS = "implClass";
+    private static final String MAP_GET_KEY = "getKey";
+    private static final String MAP_GET_LABEL = "getLabel";
+    private static final String MAP_GET_SEARCH_URL = "getSearchUrl";
+    private static final String MAP_GET_QUERY = "getQuery";
+    private static final String MAP_TEMPLATE_KEY = "templateKey";
+    private static final String MAP_TEMPLATE_LABEL = "templateLabel";
+    private static final String MAP_DATA_MODEL_TYPE = "dataModelType";
+    private static final String MAP_DATA_MODEL_SOURCE = "dataModelSource";
+    private volatile Map<String, String> persistedMappings = null;
+
+    // o() 输出缓存：输入元素与配置代数都未变时直接复用上次的结果，n0 刷新时清除
+    private volatile EngineListMemo engineListMemo = null;
+
+    private static final class EngineListMemo {
+        final Object[] input;
+        final long generation;
+        final List<Object> output;
+
+        EngineListMemo(Object[] input, long generation, List<Object> output) {
+            this.input = input;
+            this.generation = generation;
+            this.output = output;
+        }
+
+        boolean matches(List<Object> list, long currentGeneration) {
+            if (generation != currentGeneration || list.size() != input.length) return false;
+            for (int i = 0; i < input.length; i++) {
+                if (list.get(i) != input[i]) return false;
+            }
+            return true;
+        }
+    }
+
+    // 发现结果在后台线程上报，n0 不等待 binder 与模块端写盘
+    private final DiscoveryReporter<DiscoveredEngines> discoveryReporter =
+            new DiscoveryReporter<>("engines", SearchEngineHook::deliverDiscoveredEngines);
 
-    private boolean isMappingResolved = false;
-    private Object cachedDataModel = null;
-    private Constructor<?> cachedConstructor = null;
+    // 映射解析失败时把各类的失败次数与最近原因上报到模块端，内容不变时不重复上报
+    private final DiscoveryReporter<String[]> diagnosticsReporter =
+            new DiscoveryReporter<>("diagnostics", SearchEngineHook::deliverDiagnostics);
 
-    private int reportFailureCount = 0;
-    private static final int MAX_REPORT_FAILURES = 3;
+    private static final class DiscoveredEngines {
+        final String[] keys;
+        final String[] names;
+        final String[] searchUrls;
+
+        DiscoveredEngines(String[] keys, String[] names, String[] searchUrls) {
+            this.keys = keys;
+            this.names = names;
+            this.searchUrls = searchUrls;
+        }
+    }
 
     public SearchEngineHook(XC_LoadPackage.LoadPackageParam lpparam) {
         this.lpparam = lpparam;
@@ -70,6 +153,7 @@ public class SearchEngineHook {
         this.appContext = context;
         if (context != null) {
             PrefsCache.refresh(context);
+            restoreMappings();
         }
     }
 
@@ -113,8 +197,8 @@ public class SearchEngineHook {
                     String requestedKey = (String) param.args[0];
                     if (getContextOrFallback() == null) return;
 
-                    // 1. Emergency Init
-                    if (!isMappingResolved || cachedConstructor == null) {
+                    // 1. Emergency Init（从持久化映射恢复时只有构造函数，数据模型仍需从实例读取）
+                    if (!isMappingResolved || cachedConstructor == null || cachedDataModel == null) {
                         emergencyInit(param.thisObject);
                     }
 
@@ -126,7 +210,8 @@ public class SearchEngineHook {
                             // 检查是否需要接管：
                             // 1. 不是内置引擎 (config.isBuiltin == false)
                             // 2. 是内置引擎，但当前发现列表里没有 (missing built-in)
-                            boolean isMissingBuiltin = config.isBuiltin && !currentDiscoveredKeys.contains(config.key);
+                            Set<String> discoveredKeys = currentDiscoveredKeys;
+                            boolean isMissingBuiltin = config.isBuiltin && !discoveredKeys.contains(config.key);
 
                             if (!config.isBuiltin || isMissingBuiltin) {
                                 Object customInstance = getOrCreateCustomInstance(config);
@@ -138,10 +223,16 @@ public class SearchEngineHook {
                         }
                     }
 
-                    // 3. Fallback Analysis
+                    // 3. Fallback Analysis（同样受失败退避限制）
                     Object result = param.getResult();
-                    if (result != null) {
+                    if (result != null && !isMappingResolved && emergencyAttempts.shouldAttempt(result.getClass())) {
                         resolveMappings(result);
+                        if (isMappingResolved) {
+                            emergencyAttempts.recordSuccess(result.getClass());
+                        } else {
+                            emergencyAttempts.recordFailure(result.getClass(), "key method not found");
+                            reportDiagnostics();
+                        }
                     }
                 }
             });
@@ -152,23 +243,54 @@ public class SearchEngineHook {
     }
 
     private void emergencyInit(Object defaultSearchEnginesInstance) {
+        Class<?> clazz = defaultSearchEnginesInstance.getClass();
+        if (!emergencyAttempts.shouldAttempt(clazz)) return;
+
+        String reason = "no usable engine list";
         try {
-            Field[] fields = defaultSearchEnginesInstance.getClass().getDeclaredFields();
-            for (Field field : fields) {
-                field.setAccessible(true);
-                if (List.class.isAssignableFrom(field.getType())) {
-                    List<?> list = (List<?>) field.get(defaultSearchEnginesInstance);
-                    if (list != null && !list.isEmpty()) {
-                        Object sample = list.get(0);
-                        if (sample != null && !Proxy.isProxyClass(sample.getClass())) {
-                            resolveMappings(sample);
-                            extractConstructorData(sample);
-                            if (isMappingResolved) return;
-                        }
+            for (Accessors.FieldAccessor field : emergencyAttempts.listFields(clazz)) {
+                List<?> list = (List<?>) field.get(defaultSearchEnginesInstance);
+                if (list != null && !list.isEmpty()) {
+                    Object sample = list.get(0);
+                    if (sample != null && !Proxy.isProxyClass(sample.getClass())) {
+                        resolveMappings(sample);
+                        extractConstructorData(sample);
+                        if (isMappingResolved) break;
                     }
                 }
             }
-        } catch (Throwable ignored) {}
+        } catch (Throwable t) {
+            reason = t.getClass().getSimpleName() + ": " + t.getMessage();
+        }
+
+        if (isMappingResolved && cachedConstructor != null && cachedDataModel != null) {
+            emergencyAttempts.recordSuccess(clazz);
+        } else {
+            emergencyAttempts.recordFailure(clazz, !isMappingResolved ? reason
+                    : cachedConstructor == null ? "constructor not found" : "data model not found");
+            reportDiagnostics();
+        }
+    }
+
+    private void reportDiagnostics() {
+        Context context = getContextOrFallback();
+        if (context == null) return;
+
+        List<String[]> summary = emergencyAttempts.failureSummary();
+        if (summary.isEmpty()) return;
+
+        String[] lines = new String[summary.size()];
+        for (int i = 0; i < lines.length; i++) {
+            String[] entry = summary.get(i);
+            lines[i] = entry[0] + " " + entry[1] + ": " + entry[2] + " failed attempts, last: " + entry[3];
+        }
+        diagnosticsReporter.submit(context, lines, DiscoveryReporter.hash(summary), false);
+    }
+
+    private static void deliverDiagnostics(Context context, String[] lines) throws Exception {
+        Bundle extras = new Bundle();
+        extras.putStringArray(SearchEngineProvider.EXTRA_DIAGNOSTICS, lines);
+        ProviderConnection.call(context, SearchEngineProvider.METHOD_REPORT_DIAGNOSTICS, null, extras);
     }
 
     @SuppressWarnings("unchecked")
@@ -180,37 +302,57 @@ public class SearchEngineHook {
         if (list == null || list.isEmpty()) return;
         getContextOrFallback();
 
+        // o() 调用远多于 n0：输入与配置都未变时直接返回缓存结果的副本
+        long generation = PrefsCache.getGeneration(appContext);
+        if (index < 0) {
+            EngineListMemo memo = engineListMemo;
+            if (memo != null && memo.matches(list, generation)) {
+                param.setResult(new ArrayList<>(memo.output));
+                return;
+            }
+        } else {
+            engineListMemo = null;
+        }
+
         Object sample = list.get(0);
         resolveMappings(sample);
         extractConstructorData(sample);
 
+        // 解析失败时 key 全部取不到：
+        // 此时既不能判断哪些内置引擎缺失，也无法按配置过滤，原样放行，
+        // 也不发布空的发现集合，否则 v() 会把所有内置引擎当作“消失的内置引擎”接管
+        if (!isMappingResolved) return;
+
         // 1. 统计当前浏览器真正返回了哪些 Key
         // 关键修改：只在 n0 (index >= 0) 时进行上报。
         // n0 是刷新列表，传入的是全新的、未被污染的列表。
         // o (index < 0) 是获取列表，返回的可能是已经被我们污染过（注入了自定义引擎）的列表。
         // 如果在 o 中上报，会导致我们注入的“消失的内置引擎”被误报为“存在”，从而无法标记为“已移除”。
 
+        // 整轮发现结果先收集，最后一次性上报（含完成标记），Provider 端只读写一次配置
+        List<String[]> discovered = null;
+        Set<String> discoveredKeys = null;
         if (index >= 0) {
-            reportedEngines.clear(); // 清除已上报缓存，确保全量上报给 Provider，以便计算差集
-            currentDiscoveredKeys.clear();
+            discovered = new ArrayList<>();
+            discoveredKeys = new HashSet<>();
         }
 
         Set<String> keysInCurrentList = new HashSet<>();
         for (Object engine : list) {
-            String key = getKey(engine);
+            String key = engineKey(engine);
             if (key != null) {
                 keysInCurrentList.add(key);
 
-                // 只在 n0 (index >= 0) 时上报发现，保证数据源的纯净性
-                if (index >= 0) {
-                    reportDiscoveredEngine(engine);
+                // 只在 n0 (index >= 0) 时收集发现，保证数据源的纯净性
+                if (discovered != null) {
+                    collectDiscoveredEngine(engine, discoveredKeys, discovered);
                 }
             }
         }
 
-        // 只在 n0 时通知完成
-        if (index >= 0) {
-            notifyDiscoverComplete();
+        if (discovered != null) {
+            currentDiscoveredKeys = Collections.unmodifiableSet(discoveredKeys);
+            reportDiscoveredBatch(discovered);
         }
 
         // 2. 创建额外的引擎（自定义 + 消失的内置）
@@ -231,23 +373,39 @@ public class SearchEngineHook {
             }
         } else {
             param.setResult(finalFilteredList);
+            // 映射和构造数据就绪后结果才稳定，之前不缓存
+            if (isMappingResolved && cachedConstructor != null && cachedDataModel != null) {
+                engineListMemo = new EngineListMemo(list.toArray(), generation,
+                        new ArrayList<>(finalFilteredList));
+            }
         }
     }
 
     // ... resolveMappings, analyzeClassFeatures, extractConstructorData 保持不变 ...
-    private synchronized void resolveMappings(Object sampleEngine) {
+    private void resolveMappings(Object sampleEngine) {
         if (isMappingResolved || sampleEngine == null || getContextOrFallback() == null) return;
         if (Proxy.isProxyClass(sampleEngine.getClass())) return;
 
+        synchronized (resolveLock) {
+            if (isMappingResolved) return;
+            resolveMappingsLocked(sampleEngine);
+        }
+    }
+
+    private void resolveMappingsLocked(Object sampleEngine) {
         try {
             Class<?> clazz = sampleEngine.getClass();
             analyzeClassFeatures(clazz, sampleEngine);
 
             if (methodGetKey != null) {
                 searchEngineImplClass = clazz;
+                keyGetter = Accessors.stringGetter(clazz, methodGetKey);
+                labelGetter = Accessors.stringGetter(clazz, methodGetLabel);
+                searchUrlGetter = Accessors.stringGetter(clazz, methodGetSearchUrl);
                 hookSearchEngineImplClass(searchEngineImplClass);
                 isMappingResolved = true;
                 XposedBridge.log("[" + TAG + "] Mappings resolved. Key method: " + methodGetKey);
+                persistMappings();
             }
         } catch (Exception e) {
             XposedBridge.log("[" + TAG + "] Failed to resolve mappings: " + e.getMessage());
@@ -334,13 +492,27 @@ public class SearchEngineHook {
 
     private void extractConstructorData(Object sampleEngine) {
         if (cachedConstructor != null && cachedDataModel != null) return;
+        synchronized (resolveLock) {
+            extractConstructorDataLocked(sampleEngine);
+        }
+    }
+
+    private void extractConstructorDataLocked(Object sampleEngine) {
+        if (cachedConstructor != null && cachedDataModel != null) return;
+
+        // 已从持久化映射恢复构造函数时，直接按记录的成员读取数据模型
+        if (cachedConstructor != null && dataModelSource != null) {
+            cachedDataModel = readDataModel(sampleEngine, dataModelSource);
+            if (cachedDataModel != null) return;
+        }
+
         try {
             Constructor<?>[] constructors = sampleEngine.getClass().getDeclaredConstructors();
             for (Constructor<?> c : constructors) {
                 Class<?>[] types = c.getParameterTypes();
                 if (types.length == 2 && types[0] == Context.class) {
+                    c.setAccessible(true);
                     cachedConstructor = c;
-                    cachedConstructor.setAccessible(true);
 
                     Class<?> dataModelType = types[1];
                     Method[] methods = sampleEngine.getClass().getDeclaredMethods();
@@ -348,6 +520,7 @@ public class SearchEngineHook {
                         if(m.getReturnType() == dataModelType && m.getParameterTypes().length == 0) {
                             m.setAccessible(true);
                             cachedDataModel = m.invoke(sampleEngine);
+                            dataModelSource = "m:" + m.getName();
                             break;
                         }
                     }
@@ -357,6 +530,7 @@ public class SearchEngineHook {
                             f.setAccessible(true);
                             if (f.getType() == dataModelType) {
                                 cachedDataModel = f.get(sampleEngine);
+                                dataModelSource = "f:" + f.getName();
                                 break;
                             }
                         }
@@ -365,6 +539,130 @@ public class SearchEngineHook {
                 }
             }
         } catch (Throwable ignored) {}
+
+        if (cachedDataModel != null) {
+            persistMappings();
+        }
+    }
+
+    private Object readDataModel(Object sampleEngine, String source) {
+        try {
+            String name = source.substring(2);
+            if (source.startsWith("m:")) {
+                Method m = sampleEngine.getClass().getDeclaredMethod(name);
+                m.setAccessible(true);
+                return m.invoke(sampleEngine);
+            } else {
+                Field f = sampleEngine.getClass().getDeclaredField(name);
+                f.setAccessible(true);
+                return f.get(sampleEngine);
+            }
+        } catch (Throwable t) {
+            return null;
+        }
+    }
+
+    /**
+     * 从持久化映射恢复方法名、构造函数和模板值，跳过对实例的探测
+     * 记录失效（类或方法不存在、签名不符）时清除记录，回退到探测
+     */
+    private void restoreMappings() {
+        if (isMappingResolved || appContext == null) return;
+        synchronized (resolveLock) {
+            restoreMappingsLocked();
+        }
+    }
+
+    private void restoreMappingsLocked() {
+        if (isMappingResolved) return;
+
+        Map<String, String> stored = MappingStore.load(appContext, MAPPING_NAMESPACE);
+        if (stored == null) return;
+
+        try {
+            Class<?> clazz = XposedHelpers.findClass(stored.get(MAP_IMPL_CLASS), lpparam.classLoader);
+
+            String keyName = stored.get(MAP_GET_KEY);
+            String labelName = stored.get(MAP_GET_LABEL);
+            String searchUrlName = stored.get(MAP_GET_SEARCH_URL);
+            String queryName = stored.get(MAP_GET_QUERY);
+            if (!isStringMethod(clazz, keyName)
+                    || (labelName != null && !isStringMethod(clazz, labelName))
+                    || (searchUrlName != null && !isStringMethod(clazz, searchUrlName))
+                    || (queryName != null && !isStringMethod(clazz, queryName, String.class))) {
+                throw new IllegalStateException("method signature mismatch");
+            }
+
+            Constructor<?> constructor = null;
+            String dataModelTypeName = stored.get(MAP_DATA_MODEL_TYPE);
+            if (dataModelTypeName != null) {
+                Class<?> dataModelType = XposedHelpers.findClass(dataModelTypeName, lpparam.classLoader);
+                constructor = clazz.getDeclaredConstructor(Context.class, dataModelType);
+                constructor.setAccessible(true);
+            }
+
+            methodGetKey = keyName;
+            methodGetLabel = labelName;
+            methodGetSearchUrl = searchUrlName;
+            methodGetQuery = queryName;
+            templateKeyOriginalValue = stored.get(MAP_TEMPLATE_KEY);
+            templateLabelOriginalValue = stored.get(MAP_TEMPLATE_LABEL);
+            if (constructor != null) {
+                cachedConstructor = constructor;
+                dataModelSource = stored.get(MAP_DATA_MODEL_SOURCE);
+            }
+
+            searchEngineImplClass = clazz;
+            keyGetter = Accessors.stringGetter(clazz, methodGetKey);
+            labelGetter = Accessors.stringGetter(clazz, methodGetLabel);
+            searchUrlGetter = Accessors.stringGetter(clazz, methodGetSearchUrl);
+            hookSearchEngineImplClass(clazz);
+            isMappingResolved = true;
+            persistedMappings = stored;
+
+            XposedBridge.log("[" + TAG + "] Mappings restored from store. Key method: " + methodGetKey);
+        } catch (Throwable t) {
+            XposedBridge.log("[" + TAG + "] Stored mappings invalid, probing again: " + t.getMessage());
+            MappingStore.clear(appContext, MAPPING_NAMESPACE);
+        }
+    }
+
+    private static boolean isStringMethod(Class<?> clazz, String name, Class<?>... params) {
+        if (name == null) return false;
+        try {
+            Method m = clazz.getDeclaredMethod(name, params);
+            return m.getReturnType() == String.class && Modifier.isPublic(m.getModifiers());
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 保存当前解析结果；与上次保存的内容相同时跳过
+     */
+    private void persistMappings() {
+        if (!isMappingResolved || searchEngineImplClass == null || appContext == null) return;
+
+        Map<String, String> values = new HashMap<>();
+        values.put(MAP_IMPL_CLASS, searchEngineImplClass.getName());
+        values.put(MAP_GET_KEY, methodGetKey);
+        putIfNotNull(values, MAP_GET_LABEL, methodGetLabel);
+        putIfNotNull(values, MAP_GET_SEARCH_URL, methodGetSearchUrl);
+        putIfNotNull(values, MAP_GET_QUERY, methodGetQuery);
+        putIfNotNull(values, MAP_TEMPLATE_KEY, templateKeyOriginalValue);
+        putIfNotNull(values, MAP_TEMPLATE_LABEL, templateLabelOriginalValue);
+        if (cachedConstructor != null && dataModelSource != null) {
+            values.put(MAP_DATA_MODEL_TYPE, cachedConstructor.getParameterTypes()[1].getName());
+            values.put(MAP_DATA_MODEL_SOURCE, dataModelSource);
+        }
+
+        if (values.equals(persistedMappings)) return;
+        persistedMappings = values;
+        MappingStore.save(appContext, MAPPING_NAMESPACE, values);
+    }
+
+    private static void putIfNotNull(Map<String, String> map, String key, String value) {
+        if (value != null) map.put(key, value);
     }
 
     private void hookSearchEngineImplClass(Class<?> clazz) {
@@ -373,8 +671,7 @@ public class SearchEngineHook {
             XposedHelpers.findAndHookMethod(clazz, methodGetKey, new XC_MethodHook() {
                 @Override
                 protected void beforeHookedMethod(MethodHookParam param) throws Throwable {
-                    PrefsCache.EngineConfig config = (PrefsCache.EngineConfig)
-                            XposedHelpers.getAdditionalInstanceField(param.thisObject, FIELD_CUSTOM_CONFIG);
+                    PrefsCache.EngineConfig config = customConfigOf(param.thisObject);
                     if (config != null) {
                         param.setResult(config.key);
                     }
@@ -387,8 +684,7 @@ public class SearchEngineHook {
             XposedHelpers.findAndHookMethod(clazz, methodGetLabel, new XC_MethodHook() {
                 @Override
                 protected void afterHookedMethod(MethodHookParam param) throws Throwable {
-                    PrefsCache.EngineConfig customConfig = (PrefsCache.EngineConfig)
-                            XposedHelpers.getAdditionalInstanceField(param.thisObject, FIELD_CUSTOM_CONFIG);
+                    PrefsCache.EngineConfig customConfig = customConfigOf(param.thisObject);
 
                     if (customConfig != null) {
                         // 自定义实例：直接返回配置名称
@@ -405,8 +701,8 @@ public class SearchEngineHook {
                     if (key == null) return;
 
                     String originalLabel = (String) param.getResult();
-                    if (originalLabel != null && !originalLabels.containsKey(key)) {
-                        originalLabels.put(key, originalLabel);
+                    if (originalLabel != null) {
+                        originalLabels.putIfAbsent(key, originalLabel);
                     }
 
                     // 检查是否有用户修改
@@ -424,8 +720,7 @@ public class SearchEngineHook {
             XposedHelpers.findAndHookMethod(clazz, methodGetSearchUrl, new XC_MethodHook() {
                 @Override
                 protected void afterHookedMethod(MethodHookParam param) throws Throwable {
-                    PrefsCache.EngineConfig customConfig = (PrefsCache.EngineConfig)
-                            XposedHelpers.getAdditionalInstanceField(param.thisObject, FIELD_CUSTOM_CONFIG);
+                    PrefsCache.EngineConfig customConfig = customConfigOf(param.thisObject);
                     if (customConfig != null) {
                         if (customConfig.searchUrl != null && !customConfig.searchUrl.isEmpty()) {
                             param.setResult(customConfig.searchUrl);
@@ -437,8 +732,8 @@ public class SearchEngineHook {
                     if (key == null) return;
 
                     String originalUrl = (String) param.getResult();
-                    if (originalUrl != null && !originalUrl.isEmpty() && !originalSearchUrls.containsKey(key)) {
-                        originalSearchUrls.put(key, originalUrl);
+                    if (originalUrl != null && !originalUrl.isEmpty()) {
+                        originalSearchUrls.putIfAbsent(key, originalUrl);
                     }
 
                     if (getContextOrFallback() == null) return;
@@ -458,7 +753,7 @@ public class SearchEngineHook {
                     PrefsCache.EngineConfig config = getEffectiveConfig(param.thisObject);
                     if (config != null && config.searchUrl != null && !config.searchUrl.isEmpty()) {
                         String query = (String) param.args[0];
-                        param.setResult(buildSearchUrl(config.searchUrl, query));
+                        param.setResult(config.getSearchUrlTemplate().expand(query));
                     }
                 }
             });
@@ -466,49 +761,72 @@ public class SearchEngineHook {
     }
 
     private String getKeyInternal(Object obj) {
-        if (obj == null) return null;
+        EngineIdentity identity = identify(obj);
+        return identity != null ? identity.key : null;
+    }
 
-        PrefsCache.EngineConfig config = (PrefsCache.EngineConfig)
-                XposedHelpers.getAdditionalInstanceField(obj, FIELD_CUSTOM_CONFIG);
-        if (config != null) {
-            return config.key;
+    private PrefsCache.EngineConfig getEffectiveConfig(Object engineInstance) {
+        EngineIdentity identity = identify(engineInstance);
+        if (identity == null) return null;
+        if (identity.customConfig != null) {
+            return identity.customConfig;
         }
 
-        try {
-            if (methodGetKey != null) {
-                Object res = XposedHelpers.callMethod(obj, methodGetKey);
-                return (res instanceof String) ? (String) res : null;
-            }
-        } catch (Throwable ignored) {}
+        if (getContextOrFallback() == null) return null;
 
-        return null;
+        return PrefsCache.getEngineConfig(appContext, identity.key);
     }
 
-    private PrefsCache.EngineConfig getEffectiveConfig(Object engineInstance) {
-        PrefsCache.EngineConfig config = (PrefsCache.EngineConfig)
-                XposedHelpers.getAdditionalInstanceField(engineInstance, FIELD_CUSTOM_CONFIG);
-        if (config != null) {
-            return config;
-        }
+    /**
+     * 解析并缓存引擎实例的 key 与自定义配置；key 取不到时不缓存，下次重试
+     */
+    private EngineIdentity identify(Object engine) {
+        if (engine == null) return null;
 
-        if (getContextOrFallback() == null) return null;
+        EngineIdentity identity = engineIdentities.get(engine);
+        if (identity != null) return identity;
 
-        String key = getKey(engineInstance);
+        PrefsCache.EngineConfig customConfig = (PrefsCache.EngineConfig)
+                XposedHelpers.getAdditionalInstanceField(engine, FIELD_CUSTOM_CONFIG);
+        String key = customConfig != null ? customConfig.key : getKey(engine);
         if (key == null) return null;
 
-        return PrefsCache.getEngineConfig(appContext, key);
+        identity = new EngineIdentity(key, customConfig);
+        engineIdentities.put(engine, identity);
+        return identity;
+    }
+
+    private String engineKey(Object engine) {
+        EngineIdentity identity = identify(engine);
+        return identity != null ? identity.key : null;
+    }
+
+    /**
+     * 只查询自定义配置，不触发 key 解析（供被 hook 的 getKey 自身使用，避免重入）
+     */
+    private PrefsCache.EngineConfig customConfigOf(Object engine) {
+        EngineIdentity identity = engineIdentities.get(engine);
+        if (identity != null) return identity.customConfig;
+        return (PrefsCache.EngineConfig) XposedHelpers.getAdditionalInstanceField(engine, FIELD_CUSTOM_CONFIG);
     }
 
     private Object getOrCreateCustomInstance(PrefsCache.EngineConfig config) {
-        if (customInstanceCache.containsKey(config.key)) {
-            return customInstanceCache.get(config.key);
-        }
+        if (getContextOrFallback() == null) return null;
 
-        if (cachedConstructor == null || cachedDataModel == null || getContextOrFallback() == null) return null;
+        customInstances.prune(PrefsCache.getGeneration(appContext), PrefsCache.getEngineConfigs(appContext).keySet());
+
+        String fingerprint = CustomInstancePool.fingerprint(config.name, config.searchUrl);
+        Object cached = customInstances.get(config.key, fingerprint);
+        if (cached != null) return cached;
+
+        Constructor<?> constructor = cachedConstructor;
+        Object dataModel = cachedDataModel;
+        if (constructor == null || dataModel == null) return null;
 
         try {
-            Object instance = cachedConstructor.newInstance(appContext, cachedDataModel);
+            Object instance = constructor.newInstance(appContext, dataModel);
             XposedHelpers.setAdditionalInstanceField(instance, FIELD_CUSTOM_CONFIG, config);
+            engineIdentities.put(instance, new EngineIdentity(config.key, config));
 
             if (templateKeyOriginalValue != null) {
                 replaceStringField(instance, templateKeyOriginalValue, config.key);
@@ -520,8 +838,8 @@ public class SearchEngineHook {
 
             clearResourceIds(instance);
 
-            customInstanceCache.put(config.key, instance);
-            return instance;
+            // 并发创建时以先放入的实例为准
+            return customInstances.put(config.key, fingerprint, instance);
         } catch (Throwable t) {
             XposedBridge.log("[" + TAG + "] Failed to create custom instance: " + t.getMessage());
             return null;
@@ -598,13 +916,7 @@ public class SearchEngineHook {
         Map<String, PrefsCache.EngineConfig> configs = PrefsCache.getEngineConfigs(appContext);
 
         for (Object engine : engineList) {
-            String key;
-            PrefsCache.EngineConfig customConfig = (PrefsCache.EngineConfig) XposedHelpers.getAdditionalInstanceField(engine, FIELD_CUSTOM_CONFIG);
-            if (customConfig != null) {
-                key = customConfig.key;
-            } else {
-                key = getKey(engine);
-            }
+            String key = engineKey(engine);
 
             if (key != null) {
                 PrefsCache.EngineConfig config = configs.get(key);
@@ -620,29 +932,14 @@ public class SearchEngineHook {
         return filteredList;
     }
 
-    private String buildSearchUrl(String template, String query) {
-        if (template == null) return "";
-        if (query == null) query = "";
-        String encodedQuery;
-        try { encodedQuery = URLEncoder.encode(query, "UTF-8"); } catch (Exception e) { encodedQuery = query; }
-        if (template.contains("{searchTerms}")) return template.replace("{searchTerms}", encodedQuery);
-        if (template.contains("%s")) return template.replace("%s", encodedQuery);
-        return template + (template.contains("?") ? "&q=" : "?q=") + encodedQuery;
-    }
-
-    private void reportDiscoveredEngine(Object engine) {
-        if (appContext == null || engine == null) return;
-
-        if (XposedHelpers.getAdditionalInstanceField(engine, FIELD_CUSTOM_CONFIG) != null) return;
-
-        if (reportFailureCount >= MAX_REPORT_FAILURES) return;
+    private void collectDiscoveredEngine(Object engine, Set<String> discoveredKeys, List<String[]> discovered) {
+        if (engine == null) return;
 
-        String key = getKey(engine);
-        if (key == null) return;
+        EngineIdentity identity = identify(engine);
+        if (identity == null || identity.customConfig != null) return;
 
-        currentDiscoveredKeys.add(key);
-
-        if (reportedEngines.contains(key)) return;
+        String key = identity.key;
+        if (!discoveredKeys.add(key)) return;
 
         getLabel(engine);
         getSearchUrl(engine);
@@ -657,62 +954,72 @@ public class SearchEngineHook {
             searchUrl = getSearchUrl(engine);
         }
 
-        try {
-            ContentValues values = new ContentValues();
-            values.put("key", key);
-            values.put("name", label != null ? label : key);
-            if (searchUrl != null && !searchUrl.isEmpty()) {
-                values.put("searchUrl", searchUrl);
-            }
-            appContext.getContentResolver().insert(Uri.parse(PROVIDER_DISCOVER_URI), values);
-            reportedEngines.add(key);
-            reportFailureCount = 0;
-        } catch (Throwable t) {
-            reportFailureCount++;
-            XposedBridge.log("[" + TAG + "] Failed to report engine: " + t.getMessage());
+        discovered.add(new String[]{key, label != null ? label : key, searchUrl});
+    }
+
+    /**
+     * 提交整轮发现的引擎快照，由后台线程通过一次 call() 上报（同时作为完成标记）
+     * 内容与上次已确认的一致时不产生任何 IPC；模块端没有任何内置引擎时（首次安装、数据被清除）强制上报
+     */
+    private void reportDiscoveredBatch(List<String[]> discovered) {
+        if (appContext == null || discovered.isEmpty()) return;
+
+        // Provider 端按 key 处理，与顺序无关，先排序再计算哈希
+        Collections.sort(discovered, (a, b) -> a[0].compareTo(b[0]));
+        long hash = DiscoveryReporter.hash(discovered);
+
+        int size = discovered.size();
+        String[] keys = new String[size];
+        String[] names = new String[size];
+        String[] searchUrls = new String[size];
+        for (int i = 0; i < size; i++) {
+            String[] entry = discovered.get(i);
+            keys[i] = entry[0];
+            names[i] = entry[1];
+            searchUrls[i] = entry[2];
         }
+
+        discoveryReporter.submit(appContext, new DiscoveredEngines(keys, names, searchUrls),
+                hash, !hasBuiltinConfigs());
     }
 
-    private void notifyDiscoverComplete() {
-        if (appContext == null || reportFailureCount >= MAX_REPORT_FAILURES) return;
-        try {
-            appContext.getContentResolver().insert(Uri.parse(PROVIDER_DISCOVER_COMPLETE_URI), new ContentValues());
-            reportFailureCount = 0;
-        } catch (Throwable t) {
-            reportFailureCount++;
+    private boolean hasBuiltinConfigs() {
+        for (PrefsCache.EngineConfig config : PrefsCache.getEngineConfigs(appContext).values()) {
+            if (config.isBuiltin) return true;
         }
+        return false;
+    }
+
+    private static void deliverDiscoveredEngines(Context context, DiscoveredEngines snapshot) throws Exception {
+        Bundle extras = new Bundle();
+        extras.putStringArray(SearchEngineProvider.EXTRA_KEYS, snapshot.keys);
+        extras.putStringArray(SearchEngineProvider.EXTRA_NAMES, snapshot.names);
+        extras.putStringArray(SearchEngineProvider.EXTRA_SEARCH_URLS, snapshot.searchUrls);
+        extras.putBoolean(SearchEngineProvider.EXTRA_COMPLETE, true);
+        ProviderConnection.call(context, SearchEngineProvider.METHOD_DISCOVER_BATCH, null, extras);
     }
 
     private String getKey(Object obj) {
         if (obj == null) return null;
+        if (keyGetter != null) return keyGetter.get(obj);
         try {
-            if (methodGetKey != null) {
-                Object res = XposedHelpers.callMethod(obj, methodGetKey);
-                return (res instanceof String) ? (String) res : null;
-            }
-            return (String) XposedHelpers.callMethod(obj, "getKey");
+            return (String) XposedHelpers.callMethod(obj, methodGetKey != null ? methodGetKey : "getKey");
         } catch (Throwable t) { return null; }
     }
 
     private String getLabel(Object obj) {
         if (obj == null) return null;
+        if (labelGetter != null) return labelGetter.get(obj);
         try {
-            if (methodGetLabel != null) {
-                Object res = XposedHelpers.callMethod(obj, methodGetLabel);
-                return (res instanceof String) ? (String) res : null;
-            }
-            return (String) XposedHelpers.callMethod(obj, "getLabel");
+            return (String) XposedHelpers.callMethod(obj, methodGetLabel != null ? methodGetLabel : "getLabel");
         } catch (Throwable t) { return null; }
     }
 
     private String getSearchUrl(Object obj) {
         if (obj == null) return null;
+        if (searchUrlGetter != null) return searchUrlGetter.get(obj);
         try {
-            if (methodGetSearchUrl != null) {
-                Object res = XposedHelpers.callMethod(obj, methodGetSearchUrl);
-                return (res instanceof String) ? (String) res : null;
-            }
-            return (String) XposedHelpers.callMethod(obj, "getSearchUrl");
+            return (String) XposedHelpers.callMethod(obj, methodGetSearchUrl != null ? methodGetSearchUrl : "getSearchUrl");
         } catch (Throwable t) { return null; }
     }
 }
\ No newline at end of file
@@ -0,0 +1,103 @@
+// app/src/main/java/com/upuaut/xposedsearch/hooks/WeakIdentityMap.java
+package com.upuaut.xposedsearch.hooks;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 按对象身份（==）索引、弱引用持有键的并发 Map
+ * 用于给浏览器对象挂缓存数据：不调用对象的 equals/hashCode，对象被回收后条目随之清除
+ */
+final class WeakIdentityMap<K, V> {
+
+    private final ConcurrentHashMap<IdentityRef, V> map = new ConcurrentHashMap<>();
+    private final ReferenceQueue<Object> queue = new ReferenceQueue<>();
+
+    private static final class IdentityRef extends WeakReference<Object> {
+        private final int hash;
+
+        IdentityRef(Object referent, ReferenceQueue<Object> queue) {
+            super(referent, queue);
+            this.hash = System.identityHashCode(referent);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o instanceof IdentityRef) {
+                Object referent = get();
+                return referent != null && referent == ((IdentityRef) o).get();
+            }
+            if (o instanceof LookupKey) {
+                Object referent = get();
+                return referent != null && referent == ((LookupKey) o).referent;
+            }
+            return false;
+        }
+    }
+
+    // 查询用的临时键，不创建 WeakReference
+    private static final class LookupKey {
+        private final Object referent;
+        private final int hash;
+
+        LookupKey(Object referent) {
+            this.referent = referent;
+            this.hash = System.identityHashCode(referent);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (o instanceof IdentityRef) {
+                return referent == ((IdentityRef) o).get();
+            }
+            return o instanceof LookupKey && referent == ((LookupKey) o).referent;
+        }
+    }
+
+    @SuppressWarnings("SuspiciousMethodCalls")
+    V get(K key) {
+        if (key == null) return null;
+        return map.get(new LookupKey(key));
+    }
+
+    void put(K key, V value) {
+        if (key == null || value == null) return;
+        expungeStale();
+        map.put(new IdentityRef(key, queue), value);
+    }
+
+    @SuppressWarnings("SuspiciousMethodCalls")
+    void remove(K key) {
+        if (key == null) return;
+        map.remove(new LookupKey(key));
+    }
+
+    void clear() {
+        map.clear();
+    }
+
+    int size() {
+        expungeStale();
+        return map.size();
+    }
+
+    private void expungeStale() {
+        Reference<?> ref;
+        while ((ref = queue.poll()) != null) {
+            map.remove(ref);
+        }
+    }
+}